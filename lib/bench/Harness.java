@@ -0,0 +1,136 @@
+package bench;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** The common machinery of the projects' micro-benchmarks.  Each
+ *  benchmark is run repeatedly after a warm-up, and the best time per
+ *  operation is reported on the standard output.  The time of every run
+ *  may also be written as JSON, in the layout used by JMH, so that
+ *  results can be compared from run to run.
+ *
+ *  A project's Benchmarks class passes its command-line arguments to
+ *  names, runs the benchmarks named in the result, each of which calls
+ *  measure, and finally calls finish.
+ *  @author YunjieZhang
+ */
+public final class Harness {
+
+    /** A benchmark body. */
+    public interface Body {
+        /** Perform the benchmarked operations, returning a value that
+         *  depends on all of them. */
+        long run();
+    }
+
+    /** A harness for the benchmarks of package SUITE, which by default
+     *  runs each benchmark WARMUP times untimed and then REPEATS times
+     *  timed. */
+    public Harness(String suite, int warmup, int repeats) {
+        _suite = suite;
+        _warmup = warmup;
+        _repeats = repeats;
+    }
+
+    /** Return the names of the benchmarks to run, given the command-line
+     *  arguments ARGS and the names of ALL benchmarks: those named in
+     *  ARGS, or all of them if none are named.  ARGS may start with
+     *  --json FILE, in which case finish also writes the results to
+     *  FILE. */
+    public String[] names(String[] args, String[] all) {
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("--json")) {
+            _json = args[1];
+            first = 2;
+        }
+        String[] result = Arrays.copyOfRange(args, first, args.length);
+        return result.length == 0 ? all : result;
+    }
+
+    /** Report that NAME is not the name of a benchmark, and exit. */
+    public void unknown(String name) {
+        System.err.printf("unknown benchmark %s%n", name);
+        System.exit(1);
+    }
+
+    /** Run BODY, which performs OPS operations and returns a value
+     *  depending on all of them, as for measure(NAME, SIZE, OPS, "op",
+     *  BODY). */
+    public void measure(String name, int size, long ops, Body body) {
+        measure(name, size, ops, "op", body);
+    }
+
+    /** Run BODY, which performs OPS operations, each on a UNIT, as for
+     *  measure(NAME, SIZE, OPS, UNIT, WARMUP, REPEATS, BODY) with the
+     *  default numbers of runs. */
+    public void measure(String name, int size, long ops, String unit,
+                        Body body) {
+        measure(name, size, ops, unit, _warmup, _repeats, body);
+    }
+
+    /** Run BODY, which performs OPS operations, each on a UNIT, and
+     *  returns a value depending on all of them, WARMUP times and then
+     *  REPEATS times, reporting the fastest time per operation, and the
+     *  corresponding number of operations per nanosecond, as NAME with
+     *  input size SIZE. */
+    public void measure(String name, int size, long ops, String unit,
+                        int warmup, int repeats, Body body) {
+        double[] times = new double[repeats];
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < warmup + repeats; i += 1) {
+            long start = System.nanoTime();
+            _sink += body.run();
+            long time = System.nanoTime() - start;
+            if (i >= warmup) {
+                times[i - warmup] = (double) time / ops;
+                best = Math.min(best, times[i - warmup]);
+            }
+        }
+        System.out.printf("%-40s %9d %14.2f ns/%-4s %10.4g %ss/ns%n",
+                          name, size, best, unit, 1 / best, unit);
+        _results.add(String.format("  {\"benchmark\": \"%s.%s\", "
+                                   + "\"params\": {\"size\": \"%d\"}, "
+                                   + "\"primaryMetric\": {\"score\": %.3f, "
+                                   + "\"scoreUnit\": \"ns/%s\", "
+                                   + "\"rawData\": [%s]}}",
+                                   _suite, name, size, best, unit,
+                                   Arrays.toString(times)));
+    }
+
+    /** Report VALUE, in UNIT, as a further result of the benchmark NAME
+     *  with input size SIZE, in the layout of its measurements. */
+    public void note(String name, int size, double value, String unit) {
+        System.out.printf("%-40s %9d %14.2f %s%n", name, size, value, unit);
+    }
+
+    /** Write the results of all benchmarks run so far as JSON, if
+     *  requested in the arguments to names. */
+    public void finish() {
+        if (_json == null) {
+            return;
+        }
+        try (PrintWriter out = new PrintWriter(_json)) {
+            out.printf("[%n%s%n]%n", String.join(String.format(",%n"),
+                                                 _results));
+        } catch (IOException excp) {
+            System.err.printf("could not write %s%n", _json);
+            System.exit(1);
+        }
+    }
+
+    /** Name of the package whose benchmarks I run. */
+    private final String _suite;
+    /** Default numbers of untimed and timed runs of each benchmark. */
+    private final int _warmup, _repeats;
+    /** Name of the file to which results are written, or null. */
+    private String _json;
+    /** Accumulates benchmark results so that they cannot be optimized
+     *  away. */
+    private long _sink;
+    /** The result of each benchmark run so far, as a JSON object. */
+    private final List<String> _results = new ArrayList<>();
+
+}
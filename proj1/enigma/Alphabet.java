@@ -1,11 +1,16 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 
 /* Extra Credit Only */
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  The characters may be any
+ *  Unicode code points, including supplementary ones; those are reached
+ *  through toIndex and toCodePoint, since they do not fit in a char.
+ *  Lower-case characters are treated as their upper-case equivalents.
  *  @author YunjieZhang
  */
 class Alphabet {
@@ -13,32 +18,136 @@ class Alphabet {
     /** A new alphabet containing CHARS.  Character number #k has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
-        _character = chars.toUpperCase();
+        _codePoints = chars.codePoints().map(Character::toUpperCase)
+            .toArray();
+        int min = Integer.MAX_VALUE, max = -1;
+        for (int cp : _codePoints) {
+            min = Math.min(min, cp);
+            max = Math.max(max, cp);
+        }
+        if (_codePoints.length == 0) {
+            min = max = 0;
+        }
+        _base = min;
+        if (max - min < DENSE_LIMIT) {
+            _dense = new int[max - min + 1];
+            Arrays.fill(_dense, -1);
+        } else {
+            int capacity = Integer.highestOneBit(2 * _codePoints.length) * 2;
+            _keys = new int[capacity];
+            _values = new int[capacity];
+            Arrays.fill(_keys, -1);
+            _shift = Integer.numberOfLeadingZeros(capacity - 1);
+        }
+        for (int i = 0; i < _codePoints.length; i += 1) {
+            if (lookup(_codePoints[i]) >= 0) {
+                throw error("character %s repeated in alphabet",
+                            new String(Character.toChars(_codePoints[i])));
+            }
+            record(_codePoints[i], i);
+        }
     }
 
     /** Returns the size of the alphabet. */
     int size() {
-        return _character.length();
+        return _codePoints.length;
     }
 
     /** Returns true if C is in this alphabet. */
     boolean contains(char c) {
-        String elem = Character.toString(Character.toUpperCase(c));
-        return _character.contains(elem);
+        return toIndex(c) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size().  That character must not be a supplementary
+     *  code point. */
     char toChar(int index) {
-        return _character.charAt(index);
+        int cp = _codePoints[index];
+        if (cp > Character.MAX_VALUE) {
+            throw error("character %d of alphabet is not a single char",
+                        index);
+        }
+        return (char) cp;
     }
 
     /** Returns the index of character C, which must be in the alphabet. */
     int toInt(char c) {
-        return _character.indexOf(Character.toUpperCase(c));
+        return toIndex(c);
+    }
+
+    /** Returns the code point numbered INDEX in the alphabet, where
+     *  0 <= INDEX < size(). */
+    int toCodePoint(int index) {
+        return _codePoints[index];
+    }
+
+    /** Returns the index of code point CP, or -1 if it is not in the
+     *  alphabet. */
+    int toIndex(int cp) {
+        int result = lookup(cp);
+        if (result < 0) {
+            int upper = Character.toUpperCase(cp);
+            if (upper != cp) {
+                result = lookup(upper);
+            }
+        }
+        return result;
     }
 
+    /** Returns the index of code point CP, exactly as given, or -1 if it
+     *  is not in the alphabet. */
+    private int lookup(int cp) {
+        if (_dense != null) {
+            int k = cp - _base;
+            return k >= 0 && k < _dense.length ? _dense[k] : -1;
+        }
+        for (int h = hash(cp); ; h = (h + 1) & (_keys.length - 1)) {
+            if (_keys[h] == cp) {
+                return _values[h];
+            } else if (_keys[h] < 0) {
+                return -1;
+            }
+        }
+    }
+
+    /** Record that code point CP has index INDEX. */
+    private void record(int cp, int index) {
+        if (_dense != null) {
+            _dense[cp - _base] = index;
+            return;
+        }
+        int h = hash(cp);
+        while (_keys[h] >= 0) {
+            h = (h + 1) & (_keys.length - 1);
+        }
+        _keys[h] = cp;
+        _values[h] = index;
+    }
+
+    /** Return the slot of _keys at which to start looking for CP. */
+    private int hash(int cp) {
+        return (cp * HASH_MULTIPLIER) >>> _shift;
+    }
+
+    /** Largest span of code points indexed by a dense table. */
+    private static final int DENSE_LIMIT = 1 << 12;
+
+    /** Multiplier (2**32 divided by the golden ratio) used to hash code
+     *  points. */
+    private static final int HASH_MULTIPLIER = 0x9e3779b9;
 
-    /** The characters. */
-    private String _character;
+    /** The characters, as code points. */
+    private final int[] _codePoints;
+    /** When not null, _dense[C - _base] is the index of code point C, or
+     *  -1 if C is not in the alphabet. */
+    private int[] _dense;
+    /** Smallest code point in the alphabet. */
+    private int _base;
+    /** When _dense is null, an open-addressed hash table of my code
+     *  points, with -1 marking empty slots. */
+    private int[] _keys;
+    /** _values[H] is the index of code point _keys[H]. */
+    private int[] _values;
+    /** Shift that reduces a hashed code point to a slot of _keys. */
+    private int _shift;
 }
@@ -0,0 +1,59 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author YunjieZhang
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    /** Check a permutation of the printable ASCII characters. */
+    @Test
+    public void testPrintableAlphabet() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = '!'; c <= '~'; c += 1) {
+            if (!Character.isLowerCase(c)) {
+                chars.append(c);
+            }
+        }
+        Alphabet printable = new Alphabet(chars.toString());
+        assertEquals(chars.length(), printable.size());
+        assertEquals(chars.indexOf("~"), printable.toInt('~'));
+        assertEquals(chars.indexOf("Q"), printable.toInt('q'));
+        assertEquals(-1, printable.toInt(' '));
+        Permutation perm = new Permutation("(!~) (AZ{)", printable);
+        assertEquals('!', perm.permute('~'));
+        assertEquals('A', perm.permute('{'));
+        assertEquals('Z', perm.invert('{'));
+    }
+
+    /** Check a permutation of a sparse alphabet that includes
+     *  supplementary code points. */
+    @Test
+    public void testSparseAlphabet() {
+        String clef = new String(Character.toChars(0x1d11e));
+        String chars = "A\u00c9\u03a9\u4e2d" + clef;
+        Alphabet sparse = new Alphabet(chars);
+        assertEquals(5, sparse.size());
+        assertEquals(2, sparse.toInt('\u03c9'));
+        assertEquals(4, sparse.toIndex(0x1d11e));
+        assertEquals(0x1d11e, sparse.toCodePoint(4));
+        assertFalse(sparse.contains('B'));
+        Permutation perm =
+            new Permutation("(A" + clef + ") (\u4e2d\u00c9)", sparse);
+        assertEquals(4, perm.permute(0));
+        assertEquals(0, perm.permute(4));
+        assertEquals('\u00c9', perm.permute('\u4e2d'));
+        assertEquals('\u03a9', perm.permute('\u03a9'));
+    }
+
+}
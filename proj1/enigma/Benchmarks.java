@@ -0,0 +1,246 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import bench.Harness;
+
+/** Micro-benchmarks of the simulator's inner loops, run and reported
+ *  by a bench.Harness.
+ *  @author YunjieZhang
+ */
+public final class Benchmarks {
+
+    /** Run the benchmarks named in ARGS, or all of them if none are
+     *  named.  ARGS may start with --json FILE, in which case the results
+     *  are also written to FILE. */
+    public static void main(String... args) {
+        Benchmarks bench = new Benchmarks();
+        for (String name : bench._harness.names(args, NAMES)) {
+            switch (name) {
+            case "compiled":
+                bench.compiled();
+                break;
+            case "convert":
+                bench.convert();
+                break;
+            case "notch":
+                bench.notch();
+                break;
+            case "step":
+                bench.step();
+                break;
+            default:
+                bench._harness.unknown(name);
+            }
+        }
+        bench._harness.finish();
+    }
+
+    /** Names of all benchmarks. */
+    private static final String[] NAMES = {
+        "compiled", "convert", "notch", "step",
+    };
+
+    /** Time Machine.convert on messages of several sizes, both a whole
+     *  message at a time and, as a baseline, one character at a time. */
+    private void convert() {
+        for (int size : CONVERT_SIZES) {
+            Machine M = machine(new String[] { "B", "BETA", "I", "II",
+                                               "III" });
+            char[] msg = new char[size];
+            Random random = new Random(size);
+            for (int i = 0; i < size; i += 1) {
+                msg[i] = (char) ('A' + random.nextInt(M.alphabet().size()));
+            }
+            int rounds = Math.max(1, (ROUNDS * M.alphabet().size()) / size);
+            long ops = (long) rounds * size;
+            _harness.measure("Machine.convert", size, ops, "char", () -> {
+                int sum = 0;
+                for (int r = 0; r < rounds; r += 1) {
+                    M.convert(msg, 0, size);
+                    sum += msg[0];
+                }
+                return sum;
+            });
+            Alphabet alpha = M.alphabet();
+            _harness.measure("Machine.convert(int)", size, ops, "char", () -> {
+                int sum = 0;
+                for (int r = 0; r < rounds; r += 1) {
+                    for (int i = 0; i < size; i += 1) {
+                        msg[i] = alpha.toChar(M.convert(alpha.toInt(msg[i])));
+                    }
+                    sum += msg[0];
+                }
+                return sum;
+            });
+        }
+    }
+
+    /** Time converting messages of several typical lengths, each
+     *  starting from one of a few settings that recur, as Main does
+     *  without and with --compiled: by a Machine restored to the
+     *  message's settings, and by a CompiledMachine kept for each
+     *  setting and rewound.  The compiled tables are filled during the
+     *  warm-up. */
+    private void compiled() {
+        String[] order = { "B", "BETA", "I", "II", "III" };
+        Random random = new Random(SETTINGS);
+        Machine[] machines = new Machine[SETTINGS];
+        int[][] starts = new int[SETTINGS][];
+        CompiledMachine[] compiled = new CompiledMachine[SETTINGS];
+        for (int k = 0; k < SETTINGS; k += 1) {
+            machines[k] = machine(order);
+            String setting = "";
+            for (int i = 1; i < order.length; i += 1) {
+                setting += (char) ('A' + random.nextInt(26));
+            }
+            machines[k].setRotors(setting);
+            starts[k] = machines[k].snapshot();
+            compiled[k] = new CompiledMachine(machines[k].copy(), 1 << 26);
+        }
+        for (int size : MESSAGE_SIZES) {
+            char[] msg = new char[size];
+            for (int i = 0; i < size; i += 1) {
+                msg[i] = (char) ('A' + random.nextInt(26));
+            }
+            int messages = Math.max(1, (ROUNDS * 26) / size);
+            long ops = (long) messages * size;
+            String id = "Machine.convert message";
+            _harness.measure(id, size, ops, "char", () -> {
+                int sum = 0;
+                for (int m = 0; m < messages; m += 1) {
+                    Machine M = machines[m % SETTINGS];
+                    M.restore(starts[m % SETTINGS]);
+                    M.convert(msg, 0, size);
+                    sum += msg[0];
+                }
+                return sum;
+            });
+            id = "CompiledMachine.convert message";
+            _harness.measure(id, size, ops, "char", () -> {
+                int sum = 0;
+                for (int m = 0; m < messages; m += 1) {
+                    CompiledMachine M = compiled[m % SETTINGS];
+                    M.rewind();
+                    M.convert(msg, 0, size);
+                    sum += msg[0];
+                }
+                return sum;
+            });
+        }
+    }
+
+    /** Time atNotch on single- and multi-notch rotors at every
+     *  setting. */
+    private void notch() {
+        for (String name : new String[] { "I", "VI", "VII", "VIII" }) {
+            Rotor rotor = rotor(name);
+            int size = rotor.size();
+            String id = "MovingRotor.atNotch " + name;
+            _harness.measure(id, size, ROUNDS * size, () -> {
+                int count = 0;
+                for (int r = 0; r < ROUNDS; r += 1) {
+                    for (int k = 0; k < size; k += 1) {
+                        rotor.set(k);
+                        if (rotor.atNotch()) {
+                            count += 1;
+                        }
+                    }
+                }
+                return count;
+            });
+        }
+    }
+
+    /** Time converting characters, which steps the machine, with single-
+     *  and multi-notch rotors. */
+    private void step() {
+        String[][] orders = {
+            { "B", "BETA", "I", "II", "III" },
+            { "B", "BETA", "VI", "VII", "VIII" },
+        };
+        for (String[] order : orders) {
+            Machine M = machine(order);
+            int[] text = new int[ROUNDS * M.alphabet().size()];
+            for (int i = 0; i < text.length; i += 1) {
+                text[i] = i % M.alphabet().size();
+            }
+            String id = "Machine.step " + String.join(" ", order);
+            _harness.measure(id, text.length, text.length, () -> {
+                int sum = 0;
+                for (int c : text) {
+                    sum += M.convert(c);
+                }
+                return sum;
+            });
+        }
+    }
+
+    /** Return the naval rotor NAME, in its 0 setting. */
+    private static Rotor rotor(String name) {
+        Machine M = machine(new String[] { "B", "BETA", "I", "II", name });
+        return M.usedRotors().get(M.numRotors() - 1);
+    }
+
+    /** Return a machine of naval rotors with rotors ORDER inserted, all
+     *  at their 0 settings, and no plugboard. */
+    private static Machine machine(String[] order) {
+        List<Rotor> all = new ArrayList<>();
+        Alphabet alpha = new UpperCaseAlphabet();
+        for (int i = 0; i < ROTORS.length; i += 3) {
+            Permutation perm = new Permutation(ROTORS[i + 2], alpha);
+            String type = ROTORS[i + 1];
+            if (type.equals("R")) {
+                all.add(new Reflector(ROTORS[i], perm));
+            } else if (type.equals("N")) {
+                all.add(new FixedRotor(ROTORS[i], perm));
+            } else {
+                all.add(new MovingRotor(ROTORS[i], perm, type.substring(1)));
+            }
+        }
+        Machine M = new Machine(alpha, order.length, order.length - 2, all);
+        M.insertRotors(order);
+        M.setPlugboard(new Permutation("", alpha));
+        return M;
+    }
+
+    /** Name, type and cycles of each naval rotor, as in a
+     *  configuration file. */
+    private static final String[] ROTORS = {
+        "I", "MQ", "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)",
+        "II", "ME", "(FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)",
+        "III", "MV", "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
+        "VI", "MZM", "(AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)",
+        "VII", "MZM", "(ANOUPFRIMBZTLWKSVEGCJYDHXQ)",
+        "VIII", "MZM", "(AFLSETWUNDHOZVICQ) (BKJ) (GXY) (MPR)",
+        "Beta", "N", "(ALBEVFCYODJWUGNMQTZSKPR) (HIX)",
+        "B", "R", "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) (RX) "
+            + "(SZ) (TV)",
+    };
+
+    /** Message sizes for the convert benchmark. */
+    private static final int[] CONVERT_SIZES = {
+        1 << 6, 1 << 10, 1 << 12, 1 << 18, 1 << 20, 100 << 20,
+    };
+
+    /** Message sizes for the compiled benchmark. */
+    private static final int[] MESSAGE_SIZES = { 100, 1000, 10000 };
+    /** Number of distinct settings of the messages of the compiled
+     *  benchmark. */
+    private static final int SETTINGS = 8;
+
+    /** Number of passes over the alphabet made by each run of a
+     *  benchmark. */
+    private static final int ROUNDS = 1 << 15;
+    /** Number of untimed runs of each benchmark. */
+    private static final int WARMUP = 5;
+    /** Number of timed runs of each benchmark. */
+    private static final int REPEATS = 10;
+
+    /** Runs and reports the benchmarks. */
+    private final Harness _harness =
+        new Harness("enigma", WARMUP, REPEATS);
+
+}
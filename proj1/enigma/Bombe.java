@@ -0,0 +1,341 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static enigma.EnigmaException.*;
+
+/** A known-plaintext key search in the manner of the Turing-Welchman
+ *  bombe.  Given a crib (a guess at part of the plaintext) and the
+ *  ciphertext it lies under, it tries every start setting of every given
+ *  rotor order.  For each setting it computes the rotor scrambler at
+ *  each crib position (the machine without its plugboard) and tests the
+ *  "menu" of crib/cipher letter pairs: a guess at the plugboard partner
+ *  of the menu's most connected letter determines the partners of every
+ *  letter connected to it, and the setting is rejected when every guess
+ *  leads to a contradiction.  Surviving guesses are reported as stops,
+ *  with the plugboard pairs they imply.  Rotor orders are searched in
+ *  parallel on the common fork-join pool.
+ *  @author YunjieZhang
+ */
+class Bombe {
+
+    /** A search for settings of machines copied from PROTOTYPE that
+     *  convert CRIB to the letters of CIPHER starting at OFFSET.
+     *  PROTOTYPE supplies the alphabet, slots and available rotors. */
+    Bombe(Machine prototype, String crib, String cipher, int offset) {
+        _prototype = prototype;
+        _offset = offset;
+        Alphabet alpha = prototype.alphabet();
+        int size = alpha.size();
+        crib = crib.toUpperCase();
+        cipher = cipher.toUpperCase();
+        if (offset < 0 || offset + crib.length() > cipher.length()) {
+            throw error("crib does not fit in ciphertext at %d", offset);
+        }
+        _crib = new int[crib.length()];
+        _cipher = new int[crib.length()];
+        int[] degree = new int[size];
+        for (int i = 0; i < _crib.length; i += 1) {
+            char p = crib.charAt(i), c = cipher.charAt(offset + i);
+            if (!alpha.contains(p) || !alpha.contains(c)) {
+                throw error("crib or ciphertext not in alphabet");
+            }
+            if (p == c) {
+                throw error("crib letter %c encrypts to itself at %d",
+                            p, offset + i);
+            }
+            _crib[i] = alpha.toInt(p);
+            _cipher[i] = alpha.toInt(c);
+            degree[_crib[i]] += 1;
+            degree[_cipher[i]] += 1;
+        }
+        _edgeLetters = new int[size][];
+        _edgePositions = new int[size][];
+        for (int x = 0; x < size; x += 1) {
+            _edgeLetters[x] = new int[degree[x]];
+            _edgePositions[x] = new int[degree[x]];
+            if (degree[x] > degree[_testLetter]) {
+                _testLetter = x;
+            }
+        }
+        int[] filled = new int[size];
+        for (int i = 0; i < _crib.length; i += 1) {
+            addEdge(_crib[i], _cipher[i], i, filled);
+            addEdge(_cipher[i], _crib[i], i, filled);
+        }
+    }
+
+    /** Return the stops found by trying every start setting of each rotor
+     *  order in ORDERS (each as for Machine.insertRotors), giving up on
+     *  settings not yet tried after TIMELIMIT milliseconds.  Stops are
+     *  ordered by rotor order, then by setting. */
+    List<Stop> search(List<String[]> orders, long timeLimit) {
+        long start = System.nanoTime();
+        long deadline = start + timeLimit * NANOS_PER_MILLI;
+        List<Stop> stops = Collections.synchronizedList(new ArrayList<>());
+        _tested.set(0);
+        _finished = true;
+        IntStream.range(0, orders.size()).parallel()
+            .forEach(i -> searchOrder(orders.get(i), i, deadline, stops));
+        _elapsed = System.nanoTime() - start;
+        ArrayList<Stop> result = new ArrayList<>(stops);
+        result.sort((a, b) -> a._order != b._order
+                    ? Integer.compare(a._order, b._order)
+                    : a.setting().compareTo(b.setting()));
+        return result;
+    }
+
+    /** Return the number of settings tried by the last search. */
+    long tested() {
+        return _tested.get();
+    }
+
+    /** Return true iff the last search tried every setting. */
+    boolean finished() {
+        return _finished;
+    }
+
+    /** Return the rate at which the last search tried settings, in
+     *  settings per second. */
+    double settingsPerSecond() {
+        return _elapsed == 0 ? 0 : _tested.get() * 1e9 / _elapsed;
+    }
+
+    /** Return all orders of rotors with a reflector from REFLECTORS
+     *  followed by NUMFIXED distinct rotors from FIXED and NUMMOVING
+     *  distinct rotors from MOVING, suitable for search. */
+    static List<String[]> orders(String[] reflectors, String[] fixed,
+                                 int numFixed, String[] moving,
+                                 int numMoving) {
+        ArrayList<String[]> result = new ArrayList<>();
+        List<String[]> fixedOrders = arrangements(fixed, numFixed);
+        List<String[]> movingOrders = arrangements(moving, numMoving);
+        for (String reflector : reflectors) {
+            for (String[] f : fixedOrders) {
+                for (String[] m : movingOrders) {
+                    String[] order = new String[1 + numFixed + numMoving];
+                    order[0] = reflector;
+                    System.arraycopy(f, 0, order, 1, numFixed);
+                    System.arraycopy(m, 0, order, 1 + numFixed, numMoving);
+                    result.add(order);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return all sequences of K distinct elements of POOL. */
+    private static List<String[]> arrangements(String[] pool, int k) {
+        ArrayList<String[]> result = new ArrayList<>();
+        if (k == 0) {
+            result.add(new String[0]);
+            return result;
+        }
+        for (int i = 0; i < pool.length; i += 1) {
+            String[] rest = new String[pool.length - 1];
+            System.arraycopy(pool, 0, rest, 0, i);
+            System.arraycopy(pool, i + 1, rest, i, pool.length - i - 1);
+            for (String[] tail : arrangements(rest, k - 1)) {
+                String[] arrangement = new String[k];
+                arrangement[0] = pool[i];
+                System.arraycopy(tail, 0, arrangement, 1, k - 1);
+                result.add(arrangement);
+            }
+        }
+        return result;
+    }
+
+    /** A setting that survived the menu test. */
+    static class Stop {
+
+        /** A stop for the rotors ROTORS, the ORDER'th order searched, at
+         *  setting SETTING and implying the plugboard PLUGBOARD. */
+        Stop(String[] rotors, int order, String setting, String plugboard) {
+            _rotors = rotors;
+            _order = order;
+            _setting = setting;
+            _plugboard = plugboard;
+        }
+
+        /** Return the rotor names, reflector first. */
+        String[] rotors() {
+            return _rotors;
+        }
+
+        /** Return the start setting of the non-reflector rotors. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the plugboard pairs implied by the stop, in cycle
+         *  notation.  Letters not on the menu are left unplugged. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        @Override
+        public String toString() {
+            return "* " + String.join(" ", _rotors) + " " + _setting
+                + (_plugboard.isEmpty() ? "" : " " + _plugboard);
+        }
+
+        /** Rotor names. */
+        private final String[] _rotors;
+        /** Index of the rotor order among those searched. */
+        private final int _order;
+        /** Start setting. */
+        private final String _setting;
+        /** Implied plugboard. */
+        private final String _plugboard;
+    }
+
+    /** Record the menu edge from X to Y at crib position I, where
+     *  FILLED[X] counts the edges of X recorded so far. */
+    private void addEdge(int x, int y, int i, int[] filled) {
+        _edgeLetters[x][filled[x]] = y;
+        _edgePositions[x][filled[x]] = i;
+        filled[x] += 1;
+    }
+
+    /** Try every start setting of ORDER, the ORDERINDEX'th order
+     *  searched, until DEADLINE (in nanoseconds), adding any stops to
+     *  STOPS. */
+    private void searchOrder(String[] order, int orderIndex, long deadline,
+                             List<Stop> stops) {
+        Machine M = _prototype.copy();
+        M.insertRotors(order);
+        Alphabet alpha = M.alphabet();
+        M.setPlugboard(new Permutation("", alpha));
+        int size = alpha.size();
+        int[] settings = new int[M.numRotors()];
+        int[][] scramblers = new int[_crib.length][size];
+        int[] stecker = new int[size];
+        int[] queue = new int[size];
+        long tested = 0;
+        do {
+            if (System.nanoTime() > deadline) {
+                _finished = false;
+                break;
+            }
+            M.restore(settings);
+            M.seek(_offset);
+            for (int i = 0; i < _crib.length; i += 1) {
+                M.step();
+                for (int c = 0; c < size; c += 1) {
+                    scramblers[i][c] = M.translate(c);
+                }
+            }
+            for (int guess = 0; guess < size; guess += 1) {
+                if (consistent(scramblers, guess, stecker, queue)) {
+                    stops.add(new Stop(order, orderIndex,
+                                       settingString(settings, alpha),
+                                       plugboardString(stecker, alpha)));
+                }
+            }
+            tested += 1;
+        } while (nextSetting(settings, size));
+        _tested.addAndGet(tested);
+    }
+
+    /** Return true iff the guess that GUESS is the plugboard partner of
+     *  the test letter is consistent with the menu, given the rotor
+     *  scramblers SCRAMBLERS at each crib position.  Leaves the implied
+     *  partners (or -1) in STECKER, using QUEUE as working storage. */
+    private boolean consistent(int[][] scramblers, int guess,
+                               int[] stecker, int[] queue) {
+        Arrays.fill(stecker, -1);
+        int head = 0, tail = 0;
+        stecker[_testLetter] = guess;
+        stecker[guess] = _testLetter;
+        queue[tail++] = _testLetter;
+        if (guess != _testLetter) {
+            queue[tail++] = guess;
+        }
+        while (head < tail) {
+            int x = queue[head++];
+            int[] letters = _edgeLetters[x], positions = _edgePositions[x];
+            for (int e = 0; e < letters.length; e += 1) {
+                int y = letters[e];
+                int partner = scramblers[positions[e]][stecker[x]];
+                if (stecker[y] == -1 && stecker[partner] == -1) {
+                    stecker[y] = partner;
+                    stecker[partner] = y;
+                    queue[tail++] = y;
+                    if (partner != y) {
+                        queue[tail++] = partner;
+                    }
+                } else if (stecker[y] != partner) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Advance SETTINGS, the settings of each slot but the reflector's,
+     *  to the next combination in odometer order, returning false when
+     *  they wrap around to all zeros.  SIZE is the alphabet size. */
+    static boolean nextSetting(int[] settings, int size) {
+        for (int i = settings.length - 1; i > 0; i -= 1) {
+            settings[i] += 1;
+            if (settings[i] < size) {
+                return true;
+            }
+            settings[i] = 0;
+        }
+        return false;
+    }
+
+    /** Return SETTINGS (but the reflector's) as letters of ALPHA. */
+    private static String settingString(int[] settings, Alphabet alpha) {
+        char[] result = new char[settings.length - 1];
+        for (int i = 1; i < settings.length; i += 1) {
+            result[i - 1] = alpha.toChar(settings[i]);
+        }
+        return new String(result);
+    }
+
+    /** Return the plugboard pairs in STECKER as cycles of ALPHA. */
+    private static String plugboardString(int[] stecker, Alphabet alpha) {
+        StringBuilder result = new StringBuilder();
+        for (int x = 0; x < stecker.length; x += 1) {
+            if (stecker[x] > x) {
+                if (result.length() > 0) {
+                    result.append(' ');
+                }
+                result.append('(').append(alpha.toChar(x))
+                    .append(alpha.toChar(stecker[x])).append(')');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Nanoseconds per millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /** Machine copied for each rotor order. */
+    private final Machine _prototype;
+    /** Position in the ciphertext of the crib's first letter. */
+    private final int _offset;
+    /** Crib letters, as indices. */
+    private final int[] _crib;
+    /** Ciphertext letters under the crib, as indices. */
+    private final int[] _cipher;
+    /** For each letter, the letters joined to it on the menu. */
+    private final int[][] _edgeLetters;
+    /** For each letter, the crib positions of its menu edges. */
+    private final int[][] _edgePositions;
+    /** Letter whose partner is guessed: the most connected on the menu. */
+    private int _testLetter;
+    /** Number of settings tried by the last search. */
+    private final AtomicLong _tested = new AtomicLong();
+    /** True iff the last search tried every setting. */
+    private volatile boolean _finished;
+    /** Duration of the last search, in nanoseconds. */
+    private long _elapsed;
+}
@@ -0,0 +1,66 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author YunjieZhang
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Plaintext whose start is used as a crib. */
+    private static final String PLAIN =
+        "WETTERVORHERSAGEBISKAYANACHTSBEDECKTREGENWINDAUSWEST";
+
+    /** Check that the bombe stops at the setting that produced a
+     *  ciphertext, and recovers the plugboard pairs on its menu. */
+    @Test
+    public void checkSearch() {
+        Machine M = navalMachine(4, 3);
+        M.insertRotors(new String[] { "B", "II", "IV", "I" });
+        M.setRotors("QDK");
+        M.setPlugboard(new Permutation("(AM) (TZ) (EY) (RW)", UPPER));
+        String cipher = M.convert(PLAIN);
+
+        List<String[]> orders = Bombe.orders(new String[] { "B" },
+                                             new String[0], 0,
+                                             new String[] { "I", "II",
+                                                            "IV" }, 3);
+        assertEquals(6, orders.size());
+        Bombe bombe = new Bombe(navalMachine(4, 3),
+                                PLAIN.substring(0, 24), cipher, 0);
+        List<Bombe.Stop> stops = bombe.search(orders, 60000);
+        assertTrue(bombe.finished());
+        assertEquals(6 * 26 * 26 * 26, bombe.tested());
+        boolean found = false;
+        for (Bombe.Stop stop : stops) {
+            if (stop.setting().equals("QDK")
+                && String.join(" ", stop.rotors()).equals("B II IV I")) {
+                found = true;
+                assertTrue(stop.plugboard().contains("(AM)"));
+                assertTrue(stop.plugboard().contains("(EY)"));
+            }
+        }
+        assertTrue(found);
+        assertTrue(stops.size() < 100);
+    }
+
+    /** Check that a crib placed where a letter would encrypt to itself
+     *  is rejected. */
+    @Test(expected = EnigmaException.class)
+    public void checkImpossibleCrib() {
+        new Bombe(navalMachine(4, 3), "ABC", "XBZ", 0);
+    }
+
+}
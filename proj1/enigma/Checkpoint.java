@@ -0,0 +1,153 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static enigma.EnigmaException.*;
+import static java.nio.file.StandardOpenOption.*;
+
+/** The state of a bulk conversion at some point in its input, from which
+ *  the conversion may be resumed: the byte offsets reached in the input
+ *  and output files, the setting line in effect, the settings of the
+ *  rotors, and the number of letters of the current message line already
+ *  converted (or -1 if the input is at the start of a line).  A
+ *  checkpoint file consists of, in order (all values big-endian):
+ *      int MAGIC, int VERSION, long input offset, long output offset,
+ *      int letters, int R (the number of rotor slots), R ints (the
+ *      settings), int L, L chars (the setting line).
+ *  @author YunjieZhang
+ */
+class Checkpoint {
+
+    /** Leading bytes of every checkpoint file. */
+    static final int MAGIC = 0x454e4743;
+
+    /** Version of the format written by this class. */
+    static final int VERSION = 1;
+
+    /** A checkpoint at byte INPUT of the input and byte OUTPUT of the
+     *  output, with SETTING the setting line in effect, ROTORS the
+     *  settings of the rotors, by slot, and LETTERS the number of letters
+     *  of the current line already converted, or -1 if at the start of a
+     *  line. */
+    Checkpoint(long input, long output, String setting, int[] rotors,
+               int letters) {
+        _input = input;
+        _output = output;
+        _setting = setting;
+        _rotors = rotors.clone();
+        _letters = letters;
+    }
+
+    /** Return the offset in the input file at which to resume. */
+    long input() {
+        return _input;
+    }
+
+    /** Return the offset in the output file at which to resume. */
+    long output() {
+        return _output;
+    }
+
+    /** Return the setting line in effect at my input offset. */
+    String setting() {
+        return _setting;
+    }
+
+    /** Return the settings of the rotors, by slot. */
+    int[] rotors() {
+        return _rotors.clone();
+    }
+
+    /** Return the number of letters of the current line already
+     *  converted, or -1 if the input offset is at the start of a line. */
+    int letters() {
+        return _letters;
+    }
+
+    /** Write me to FILE, replacing any previous contents atomically, so
+     *  that FILE holds either the old or the new checkpoint even if the
+     *  process dies while writing it. */
+    void write(Path file) {
+        ByteBuffer bytes = ByteBuffer.allocate(4 * (_rotors.length + 6)
+                                               + 16 + 2 * _setting.length());
+        bytes.putInt(MAGIC).putInt(VERSION);
+        bytes.putLong(_input).putLong(_output).putInt(_letters);
+        bytes.putInt(_rotors.length);
+        for (int setting : _rotors) {
+            bytes.putInt(setting);
+        }
+        bytes.putInt(_setting.length());
+        for (int i = 0; i < _setting.length(); i += 1) {
+            bytes.putChar(_setting.charAt(i));
+        }
+        bytes.flip();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, WRITE, CREATE,
+                                                TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(true);
+        } catch (IOException excp) {
+            throw error("could not write %s", temp);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw error("could not write %s", file);
+        }
+    }
+
+    /** Return the checkpoint in FILE, or null if there is no such
+     *  file. */
+    static Checkpoint read(Path file) {
+        ByteBuffer bytes;
+        try {
+            bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException excp) {
+            return null;
+        } catch (IOException excp) {
+            throw error("could not read %s", file);
+        }
+        try {
+            if (bytes.getInt() != MAGIC || bytes.getInt() != VERSION) {
+                throw error("%s is not a checkpoint", file);
+            }
+            long input = bytes.getLong();
+            long output = bytes.getLong();
+            int letters = bytes.getInt();
+            int[] rotors = new int[bytes.getInt()];
+            for (int i = 0; i < rotors.length; i += 1) {
+                rotors[i] = bytes.getInt();
+            }
+            char[] setting = new char[bytes.getInt()];
+            for (int i = 0; i < setting.length; i += 1) {
+                setting[i] = bytes.getChar();
+            }
+            return new Checkpoint(input, output, new String(setting), rotors,
+                                  letters);
+        } catch (BufferUnderflowException | NegativeArraySizeException excp) {
+            throw error("%s is truncated", file);
+        }
+    }
+
+    /** Offset in the input file. */
+    private final long _input;
+    /** Offset in the output file. */
+    private final long _output;
+    /** Setting line in effect. */
+    private final String _setting;
+    /** Settings of the rotors, by slot. */
+    private final int[] _rotors;
+    /** Letters of the current line already converted, or -1. */
+    private final int _letters;
+
+}
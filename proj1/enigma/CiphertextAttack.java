@@ -0,0 +1,311 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only attack on messages from machines copied from a
+ *  prototype.  First, every start setting of every given rotor order is
+ *  tried with an empty plugboard, and those whose decryptions have the
+ *  highest index of coincidence are kept.  Then, starting from each kept
+ *  setting in parallel, plugboard pairs are added or exchanged one at a
+ *  time for as long as that improves first the index of coincidence and
+ *  then the n-gram score of the decryption.  The best result is kept.
+ *  Once a setting is chosen, the rotor scramblers at each position are
+ *  tabulated, so that trying a plugboard costs a few array loads per
+ *  letter and allocates nothing.
+ *  @author YunjieZhang
+ */
+class CiphertextAttack {
+
+    /** An attack on CIPHER using machines copied from PROTOTYPE and
+     *  scoring decryptions with SCORER. */
+    CiphertextAttack(Machine prototype, NgramScorer scorer, String cipher) {
+        _prototype = prototype;
+        _scorer = scorer;
+        Alphabet alpha = prototype.alphabet();
+        _size = alpha.size();
+        _cipher = new int[cipher.length()];
+        for (int i = 0; i < _cipher.length; i += 1) {
+            char c = Character.toUpperCase(cipher.charAt(i));
+            if (!alpha.contains(c)) {
+                throw error("character %c not in alphabet", c);
+            }
+            _cipher[i] = alpha.toInt(c);
+        }
+    }
+
+    /** Return the best decryption found by trying every start setting of
+     *  each rotor order in ORDERS (each as for Machine.insertRotors) and
+     *  hill-climbing the plugboard from the RESTARTS most promising of
+     *  them, using at most MAXPAIRS plugboard pairs. */
+    Result attack(List<String[]> orders, int restarts, int maxPairs) {
+        long start = System.nanoTime();
+        _decryptions.set(0);
+        List<Result> candidates =
+            Collections.synchronizedList(new ArrayList<>());
+        orders.parallelStream()
+            .forEach(order -> candidates.addAll(scan(order, restarts)));
+        ArrayList<Result> best = new ArrayList<>(candidates);
+        best.sort((a, b) -> Double.compare(b._score, a._score));
+        List<Result> seeds = best.subList(0, Math.min(restarts, best.size()));
+        Result result = seeds.parallelStream()
+            .map(seed -> climb(seed, maxPairs))
+            .max((a, b) -> Double.compare(a._score, b._score))
+            .orElseThrow(() -> error("no rotor orders to try"));
+        _elapsed = System.nanoTime() - start;
+        return result;
+    }
+
+    /** Return the number of decryptions scored by the last attack. */
+    long decryptions() {
+        return _decryptions.get();
+    }
+
+    /** Return the rate at which the last attack scored decryptions, in
+     *  decryptions per second. */
+    double decryptionsPerSecond() {
+        return _elapsed == 0 ? 0 : _decryptions.get() * 1e9 / _elapsed;
+    }
+
+    /** A candidate key and its decryption. */
+    static class Result {
+
+        /** A candidate with rotors ROTORS, rotor settings SETTINGS and
+         *  plugboard partners STECKER, whose decryption has score
+         *  SCORE. */
+        Result(String[] rotors, int[] settings, int[] stecker,
+               double score) {
+            _rotors = rotors;
+            _settings = settings;
+            _stecker = stecker;
+            _score = score;
+        }
+
+        /** Return the rotor names, reflector first. */
+        String[] rotors() {
+            return _rotors;
+        }
+
+        /** Return the start setting of the non-reflector rotors, as
+         *  letters of ALPHA. */
+        String setting(Alphabet alpha) {
+            char[] result = new char[_settings.length - 1];
+            for (int i = 1; i < _settings.length; i += 1) {
+                result[i - 1] = alpha.toChar(_settings[i]);
+            }
+            return new String(result);
+        }
+
+        /** Return the plugboard pairs, as cycles of ALPHA. */
+        String plugboard(Alphabet alpha) {
+            StringBuilder result = new StringBuilder();
+            for (int x = 0; x < _stecker.length; x += 1) {
+                if (_stecker[x] > x) {
+                    if (result.length() > 0) {
+                        result.append(' ');
+                    }
+                    result.append('(').append(alpha.toChar(x))
+                        .append(alpha.toChar(_stecker[x])).append(')');
+                }
+            }
+            return result.toString();
+        }
+
+        /** Return the score of my decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** Rotor names. */
+        private final String[] _rotors;
+        /** Rotor settings, by slot. */
+        private final int[] _settings;
+        /** Plugboard partner of each letter. */
+        private final int[] _stecker;
+        /** Score of the decryption. */
+        private final double _score;
+    }
+
+    /** Return the decryption of my ciphertext with the key in RESULT,
+     *  as letters of its alphabet. */
+    String decrypt(Result result) {
+        Machine M = machine(result._rotors);
+        M.restore(result._settings);
+        Alphabet alpha = M.alphabet();
+        M.setPlugboard(new Permutation(result.plugboard(alpha), alpha));
+        char[] text = new char[_cipher.length];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = alpha.toChar(M.convert(_cipher[i]));
+        }
+        return new String(text);
+    }
+
+    /** Return a copy of my prototype with the rotors ORDER inserted and
+     *  an empty plugboard. */
+    private Machine machine(String[] order) {
+        Machine M = _prototype.copy();
+        M.insertRotors(order);
+        M.setPlugboard(new Permutation("", M.alphabet()));
+        return M;
+    }
+
+    /** Return the KEEP start settings of ORDER whose decryptions with an
+     *  empty plugboard have the highest index of coincidence. */
+    private List<Result> scan(String[] order, int keep) {
+        Machine M = machine(order);
+        int[] settings = new int[M.numRotors()];
+        int[] plain = new int[_cipher.length];
+        int[] counts = new int[_size];
+        ArrayList<Result> best = new ArrayList<>();
+        long tried = 0;
+        do {
+            M.restore(settings);
+            M.convert(_cipher, plain, 0, plain.length);
+            tried += 1;
+            double score = NgramScorer.indexOfCoincidence(plain, plain.length,
+                                                          _size, counts);
+            if (best.size() < keep
+                || score > best.get(best.size() - 1)._score) {
+                if (best.size() == keep) {
+                    best.remove(best.size() - 1);
+                }
+                int k = best.size();
+                while (k > 0 && best.get(k - 1)._score < score) {
+                    k -= 1;
+                }
+                best.add(k, new Result(order, settings.clone(),
+                                       identity(), score));
+            }
+        } while (Bombe.nextSetting(settings, _size));
+        _decryptions.addAndGet(tried);
+        return best;
+    }
+
+    /** Return the result of hill-climbing the plugboard from SEED, using
+     *  at most MAXPAIRS pairs. */
+    private Result climb(Result seed, int maxPairs) {
+        Machine M = machine(seed._rotors);
+        M.restore(seed._settings);
+        int[][] scramblers = new int[_cipher.length][_size];
+        for (int i = 0; i < _cipher.length; i += 1) {
+            M.step();
+            for (int c = 0; c < _size; c += 1) {
+                scramblers[i][c] = M.translate(c);
+            }
+        }
+        int[] stecker = identity();
+        int[] plain = new int[_cipher.length];
+        int[] counts = new int[_size];
+        climb(scramblers, stecker, plain, counts, maxPairs, false);
+        double score =
+            climb(scramblers, stecker, plain, counts, maxPairs, true);
+        return new Result(seed._rotors, seed._settings, stecker, score);
+    }
+
+    /** Improve the plugboard partners STECKER, given the rotor
+     *  SCRAMBLERS at each position, by adding or exchanging one pair at
+     *  a time while that raises the n-gram score (if NGRAMS) or the index
+     *  of coincidence of the decryption.  Uses at most MAXPAIRS pairs,
+     *  and PLAIN and COUNTS as working storage.  Returns the final
+     *  score. */
+    private double climb(int[][] scramblers, int[] stecker, int[] plain,
+                         int[] counts, int maxPairs, boolean ngrams) {
+        double best = score(scramblers, stecker, plain, counts, ngrams);
+        long tried = 0;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int a = 0; a < _size; a += 1) {
+                for (int b = a + 1; b < _size; b += 1) {
+                    int pa = stecker[a], pb = stecker[b];
+                    if (pa == b
+                        || pa == a && pb == b && pairs(stecker) >= maxPairs) {
+                        continue;
+                    }
+                    unplug(stecker, a);
+                    unplug(stecker, b);
+                    plug(stecker, a, b);
+                    double score =
+                        score(scramblers, stecker, plain, counts, ngrams);
+                    tried += 1;
+                    if (score > best) {
+                        best = score;
+                        improved = true;
+                    } else {
+                        unplug(stecker, a);
+                        plug(stecker, a, pa);
+                        plug(stecker, b, pb);
+                    }
+                }
+            }
+        }
+        _decryptions.addAndGet(tried);
+        return best;
+    }
+
+    /** Return the score of the decryption with plugboard partners STECKER
+     *  and rotor scramblers SCRAMBLERS, left in PLAIN: its n-gram score
+     *  if NGRAMS, and otherwise its index of coincidence, computed using
+     *  COUNTS. */
+    private double score(int[][] scramblers, int[] stecker, int[] plain,
+                         int[] counts, boolean ngrams) {
+        for (int i = 0; i < plain.length; i += 1) {
+            plain[i] = stecker[scramblers[i][stecker[_cipher[i]]]];
+        }
+        if (ngrams) {
+            return _scorer.score(plain, plain.length);
+        }
+        return NgramScorer.indexOfCoincidence(plain, plain.length, _size,
+                                              counts);
+    }
+
+    /** Return the identity plugboard. */
+    private int[] identity() {
+        int[] result = new int[_size];
+        for (int c = 0; c < _size; c += 1) {
+            result[c] = c;
+        }
+        return result;
+    }
+
+    /** Return the number of pairs in STECKER. */
+    private int pairs(int[] stecker) {
+        int result = 0;
+        for (int c = 0; c < stecker.length; c += 1) {
+            if (stecker[c] > c) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Remove A and its partner from the plugboard STECKER. */
+    private static void unplug(int[] stecker, int a) {
+        stecker[stecker[a]] = stecker[a];
+        stecker[a] = a;
+    }
+
+    /** Make A and B partners on the plugboard STECKER, in which both are
+     *  currently unplugged. */
+    private static void plug(int[] stecker, int a, int b) {
+        stecker[a] = b;
+        stecker[b] = a;
+    }
+
+    /** Machine copied for each rotor order. */
+    private final Machine _prototype;
+    /** Scorer for decryptions. */
+    private final NgramScorer _scorer;
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Ciphertext, as alphabet indices. */
+    private final int[] _cipher;
+    /** Number of decryptions scored by the last attack. */
+    private final AtomicLong _decryptions = new AtomicLong();
+    /** Duration of the last attack, in nanoseconds. */
+    private long _elapsed;
+}
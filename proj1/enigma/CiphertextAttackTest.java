@@ -0,0 +1,112 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CiphertextAttack and NgramScorer
+ *  classes.
+ *  @author YunjieZhang
+ */
+public class CiphertextAttackTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /** English text from which n-gram statistics are taken. */
+    static final String SAMPLE =
+        "It was the best part of the morning when the fishing boats came "
+        + "back into the harbor and the whole town went down to the water "
+        + "to see what the sea had given them. The children ran along the "
+        + "wall shouting to their fathers, and the old men sat on the steps "
+        + "of the church and talked about the weather, which they said was "
+        + "going to change before the end of the week. There was a strong "
+        + "wind from the west and the clouds were moving quickly over the "
+        + "hills behind the houses. Nobody wanted to be out on the water "
+        + "when the storm arrived, so the men worked hard to bring in the "
+        + "nets and tie the boats to the posts along the quay. In the "
+        + "afternoon the rain started, first as a light mist and then as a "
+        + "heavy downpour that filled the streets with running water. The "
+        + "shops closed early and the people stayed inside their homes, "
+        + "sitting by the fire and listening to the sound of the wind in "
+        + "the chimney. That night the storm was the worst that anyone "
+        + "could remember. Several roofs were torn from the houses near "
+        + "the shore and one of the larger boats broke from its moorings "
+        + "and was carried out to sea. In the morning the whole town came "
+        + "out again to look at the damage. The sky was clear and the sea "
+        + "was calm, as if nothing had happened, but the beach was covered "
+        + "with wood and stones and pieces of the broken boat. The mayor "
+        + "called a meeting in the hall and it was decided that every "
+        + "family would help to repair the houses that had been damaged. "
+        + "The work took most of the summer, but by the time the autumn "
+        + "came every roof had been mended and a new boat had been built "
+        + "to replace the one that was lost. The people of the town were "
+        + "proud of what they had done together, and for many years "
+        + "afterwards they would tell the story of the great storm to "
+        + "their children and their grandchildren.";
+
+    /** Plaintext that is encrypted and then attacked. */
+    static final String PLAIN =
+        "THEREPORTFROMTHENORTHERNSTATIONSAYSTHATTHEWEATHERWILLREMAIN"
+        + "CLEARFORTHENEXTTWODAYSANDTHATTHESHIPSSHOULDLEAVETHEHARBORAT"
+        + "DAWNTOMORROWTHECAPTAINSARETOKEEPCLOSETOTHECOASTANDTOREPORT"
+        + "THEIRPOSITIONEVERYFOURHOURSUNTILTHEYREACHTHEOPENSEAWHERETHE"
+        + "WINDISEXPECTEDTOBESTRONGERFROMTHEWESTANYSHIPTHATMEETSTROUBLE"
+        + "SHOULDRETURNTOTHENEARESTPORTANDWAITFORFURTHERORDERSFROMTHE"
+        + "OFFICEINTHECAPITALTHEREWILLBENOFURTHERMESSAGESUNTILTHEEVENING"
+        + "WHENTHENEWREPORTSFROMTHESTATIONSINTHESOUTHHAVEBEENRECEIVED";
+
+    /** Check that the n-gram scorer prefers English to gibberish, and
+     *  computes the index of coincidence. */
+    @Test
+    public void checkScorer() {
+        NgramScorer scorer = new NgramScorer(UPPER, 3, SAMPLE);
+        int[] english = indices("THEWEATHERISCLEARTODAY");
+        int[] gibberish = indices("QXJZVKWPQZMXJQKVZXQWJP");
+        assertTrue(scorer.score(english, english.length)
+                   > scorer.score(gibberish, gibberish.length));
+        int[] text = indices("AABB");
+        assertEquals(4.0 / 12, NgramScorer.indexOfCoincidence(
+                         text, text.length, UPPER.size(), new int[26]),
+                     1e-9);
+    }
+
+    /** Check that the attack recovers the key of a long enough
+     *  message. */
+    @Test
+    public void checkAttack() {
+        Machine M = navalMachine(4, 3);
+        M.insertRotors(new String[] { "B", "II", "IV", "I" });
+        M.setRotors("QDK");
+        M.setPlugboard(new Permutation("(AM) (TZ) (EY) (RW)", UPPER));
+        String cipher = M.convert(PLAIN);
+
+        CiphertextAttack attack =
+            new CiphertextAttack(navalMachine(4, 3),
+                                 new NgramScorer(UPPER, 3, SAMPLE), cipher);
+        List<String[]> orders =
+            Bombe.orders(new String[] { "B" }, new String[0], 0,
+                         new String[] { "I", "II", "IV" }, 3);
+        CiphertextAttack.Result result = attack.attack(orders, 20, 10);
+        assertEquals("B II IV I", String.join(" ", result.rotors()));
+        assertEquals("QDK", result.setting(UPPER));
+        assertEquals("(AM) (EY) (RW) (TZ)", result.plugboard(UPPER));
+        assertEquals(PLAIN, attack.decrypt(result));
+    }
+
+    /** Return the indices in UPPER of the letters of TEXT. */
+    private int[] indices(String text) {
+        int[] result = new int[text.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(text.charAt(i));
+        }
+        return result;
+    }
+
+}
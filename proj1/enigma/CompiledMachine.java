@@ -0,0 +1,218 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** A machine that records, for each keypress after its construction, the
+ *  complete substitution performed by an underlying Machine, so that
+ *  once the rotor settings start to repeat, each conversion is a single
+ *  table lookup.  Rows of the table are computed lazily as they are
+ *  first needed.  When the table would exceed its memory limit before
+ *  the settings repeat, conversion falls back to the underlying machine.
+ *  The underlying machine must not be used independently afterwards:
+ *  once the table is complete, it is no longer advanced.  A compiled
+ *  machine may be rewound to the state in which it was constructed,
+ *  keeping its table, so that it serves every message that starts from
+ *  that state.
+ *  @author YunjieZhang
+ */
+class CompiledMachine {
+
+    /** A compiled form of M in its current state, whose table, with its
+     *  overhead, may hold at most about MAXBYTES bytes. */
+    CompiledMachine(Machine M, long maxBytes) {
+        _machine = M;
+        _size = M.alphabet().size();
+        _moving = M.numPawls();
+        boolean fits = _size <= MAX_ALPHABET
+            && _moving * Math.log(_size) < Math.log(Long.MAX_VALUE);
+        _maxRows = fits
+            ? (int) Math.min(maxBytes / (_size + ROW_OVERHEAD), MAX_ROWS)
+            : 0;
+        _table = new byte[Math.min(_maxRows, INITIAL_ROWS)][];
+        _seenKeys = new long[2 * INITIAL_ROWS];
+        _seenRows = new int[2 * INITIAL_ROWS];
+        _cycleStart = -1;
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1), after first advancing
+     *  the machine. */
+    int convert(int c) {
+        if (_position == _rows) {
+            if (_cycleStart >= 0) {
+                _position = _cycleStart;
+            } else if (!compileRow()) {
+                return _machine.convert(c);
+            }
+        }
+        int result = _table[_position][c] & BYTE_MASK;
+        _position += 1;
+        return result;
+    }
+
+    /** Replace the LEN characters of MSG starting at OFF with their
+     *  encodings/decodings. */
+    void convert(char[] msg, int off, int len) {
+        Alphabet alpha = _machine.alphabet();
+        for (int i = off; i < off + len; i += 1) {
+            char elem = Character.toUpperCase(msg[i]);
+            if (!alpha.contains(elem)) {
+                throw error("character %c not in alphabet", elem);
+            }
+            msg[i] = alpha.toChar(convert(alpha.toInt(elem)));
+        }
+    }
+
+    /** Return to the state in which I was constructed, keeping the rows
+     *  computed so far. */
+    void rewind() {
+        if (_end != null) {
+            _machine.restore(_end);
+        }
+        _position = 0;
+    }
+
+    /** Return the approximate number of bytes used by my table and the
+     *  structures used to build it. */
+    long bytes() {
+        return (long) _rows * (_size + ROW_OVERHEAD);
+    }
+
+    /** Return the number of table rows computed so far. */
+    int rows() {
+        return _rows;
+    }
+
+    /** Return the number of keypresses after which my substitutions
+     *  repeat, or -1 if not (yet) known. */
+    int period() {
+        return _cycleStart < 0 ? -1 : _rows - _cycleStart;
+    }
+
+    /** Advance the underlying machine and record its substitution as the
+     *  next row, or detect that its settings have repeated.  Returns
+     *  false iff the underlying machine must be used for this and all
+     *  later keypresses, in which case it has not been advanced. */
+    private boolean compileRow() {
+        if (_rows == _maxRows) {
+            if (_end == null) {
+                _end = _machine.snapshot();
+            }
+            return false;
+        }
+        _machine.step();
+        int previous = see(settingsKey());
+        if (previous >= 0) {
+            _cycleStart = previous;
+            _position = previous;
+            _seenKeys = null;
+            _seenRows = null;
+            return true;
+        }
+        if (_rows == _table.length) {
+            byte[][] bigger =
+                new byte[(int) Math.min(2L * _rows, _maxRows)][];
+            System.arraycopy(_table, 0, bigger, 0, _rows);
+            _table = bigger;
+        }
+        byte[] row = new byte[_size];
+        for (int c = 0; c < _size; c += 1) {
+            row[c] = (byte) _machine.translate(c);
+        }
+        _table[_rows] = row;
+        _rows += 1;
+        return true;
+    }
+
+    /** Return the row recorded for the packed settings KEY, if they have
+     *  been seen before, and otherwise record them for the next row and
+     *  return -1. */
+    private int see(long key) {
+        if (2 * (_rows + 1) > _seenKeys.length) {
+            long[] keys = _seenKeys;
+            int[] rows = _seenRows;
+            _seenKeys = new long[2 * keys.length];
+            _seenRows = new int[2 * keys.length];
+            for (int i = 0; i < keys.length; i += 1) {
+                if (keys[i] != 0) {
+                    int k = slot(keys[i]);
+                    _seenKeys[k] = keys[i];
+                    _seenRows[k] = rows[i];
+                }
+            }
+        }
+        int k = slot(key + 1);
+        if (_seenKeys[k] != 0) {
+            return _seenRows[k];
+        }
+        _seenKeys[k] = key + 1;
+        _seenRows[k] = _rows;
+        return -1;
+    }
+
+    /** Return the slot of _seenKeys holding KEY, or the empty slot in
+     *  which it belongs.  Collisions are resolved by linear probing. */
+    private int slot(long key) {
+        int mask = _seenKeys.length - 1;
+        int k = (int) ((key * HASH_MULTIPLIER) >>> Integer.SIZE) & mask;
+        while (_seenKeys[k] != 0 && _seenKeys[k] != key) {
+            k = (k + 1) & mask;
+        }
+        return k;
+    }
+
+    /** Return the settings of the moving rotors of the underlying
+     *  machine, packed into a single number. */
+    private long settingsKey() {
+        int[] settings = _machine.snapshot();
+        long key = 0;
+        for (int i = settings.length - _moving; i < settings.length;
+             i += 1) {
+            key = key * _size + settings[i];
+        }
+        return key;
+    }
+
+    /** Largest alphabet whose indices fit in a table entry. */
+    private static final int MAX_ALPHABET = 256;
+    /** Mask extracting an unsigned table entry. */
+    private static final int BYTE_MASK = 0xFF;
+    /** Largest number of rows in a table. */
+    private static final int MAX_ROWS = Integer.MAX_VALUE - 8;
+    /** Initial capacity of the table, in rows. */
+    private static final int INITIAL_ROWS = 1024;
+    /** Approximate number of bytes used for each row besides its
+     *  entries: the row's array header and reference, and its two slots
+     *  in _seenKeys and _seenRows, which are at most half full. */
+    static final int ROW_OVERHEAD = 48;
+    /** Multiplier used to hash packed settings (the golden ratio times
+     *  2 ** 64). */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /** The machine whose substitutions I record. */
+    private final Machine _machine;
+    /** Size of the machine's alphabet. */
+    private final int _size;
+    /** Number of moving rotors of the machine. */
+    private final int _moving;
+    /** Largest number of rows I may compute. */
+    private final int _maxRows;
+    /** Substitution for each keypress, in order. */
+    private byte[][] _table;
+    /** Number of valid rows of _table. */
+    private int _rows;
+    /** Row of _table used for the next keypress. */
+    private int _position;
+    /** Row at which the substitutions start to repeat, or -1 if not yet
+     *  known. */
+    private int _cycleStart;
+    /** Open-addressed hash table of the packed rotor settings (plus 1,
+     *  so that 0 marks an empty slot) seen so far, or null once the
+     *  period is known. */
+    private long[] _seenKeys;
+    /** Row computed for the settings in each slot of _seenKeys. */
+    private int[] _seenRows;
+    /** Settings of the underlying machine after the last row, if it has
+     *  been used beyond the table, and otherwise null. */
+    private int[] _end;
+}
@@ -0,0 +1,183 @@
+package enigma;
+
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** A single-pass reader for Enigma configuration files.  It scans the
+ *  text character by character, building each rotor's permutation
+ *  tables as its cycles are read, and reports errors with the line and
+ *  column at which they occur.
+ *  @author YunjieZhang
+ */
+class ConfigParser {
+
+    /** A parser for the configuration in TEXT. */
+    ConfigParser(CharSequence text) {
+        _text = text;
+    }
+
+    /** Return a machine configured as described by my text: an
+     *  alphabet, the numbers of rotor slots and pawls, and then the
+     *  available rotors. */
+    Machine parse() {
+        Alphabet alpha = new Alphabet(word("alphabet"));
+        int start = _pos;
+        int numRotors = number("number of rotor slots");
+        if (numRotors < 2) {
+            throw errorAt(start, "need at least 2 rotor slots");
+        }
+        if (numRotors > Machine.MAX_ROTORS) {
+            throw errorAt(start, "at most %d rotor slots allowed",
+                          Machine.MAX_ROTORS);
+        }
+        start = _pos;
+        int numPawls = number("number of pawls");
+        if (numPawls < 0 || numPawls >= numRotors) {
+            throw errorAt(start, "need 0 <= pawls < rotor slots");
+        }
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        while (skipWhitespace()) {
+            rotors.add(rotor(alpha));
+        }
+        start = _pos;
+        try {
+            return new Machine(alpha, numRotors, numPawls, rotors);
+        } catch (EnigmaException excp) {
+            throw errorAt(start, excp.getMessage());
+        }
+    }
+
+    /** Return the next rotor description, whose characters are in
+     *  ALPHA. */
+    private Rotor rotor(Alphabet alpha) {
+        String name = word("rotor name");
+        skipWhitespace();
+        int typeStart = _pos;
+        String type = word("rotor type").toUpperCase();
+        Permutation perm = new Permutation("", alpha);
+        boolean[] used = new boolean[alpha.size()];
+        while (skipWhitespace() && _text.charAt(_pos) == '(') {
+            cycle(alpha, perm, used);
+        }
+        switch (type.charAt(0)) {
+        case 'M':
+            for (int i = 1; i < type.length();
+                 i += Character.charCount(type.codePointAt(i))) {
+                int notch = type.codePointAt(i);
+                if (alpha.toIndex(notch) < 0) {
+                    throw errorAt(typeStart + i, "notch %s not in alphabet",
+                                  new String(Character.toChars(notch)));
+                }
+            }
+            return new MovingRotor(name, perm, type.substring(1));
+        case 'N':
+            if (type.length() == 1) {
+                return new FixedRotor(name, perm);
+            }
+            break;
+        case 'R':
+            if (type.length() == 1) {
+                return new Reflector(name, perm);
+            }
+            break;
+        default:
+            break;
+        }
+        throw errorAt(typeStart, "bad rotor type %s", type);
+    }
+
+    /** Read the cycle starting at the current position, adding it to
+     *  PERM.  USED records the characters of ALPHA already in a cycle of
+     *  PERM. */
+    private void cycle(Alphabet alpha, Permutation perm, boolean[] used) {
+        int start = _pos + 1;
+        _pos = start;
+        while (true) {
+            if (_pos == _text.length()) {
+                throw errorAt(start - 1, "unterminated cycle");
+            }
+            int c = Character.codePointAt(_text, _pos);
+            if (c == ')') {
+                break;
+            }
+            if (c == '(' || Character.isWhitespace(c)) {
+                throw errorAt(_pos, "unterminated cycle");
+            }
+            int index = alpha.toIndex(c);
+            if (index < 0) {
+                throw errorAt(_pos, "character %s not in alphabet",
+                              new String(Character.toChars(c)));
+            }
+            if (used[index]) {
+                throw errorAt(_pos, "character %s repeated in cycles",
+                              new String(Character.toChars(c)));
+            }
+            used[index] = true;
+            _pos += Character.charCount(c);
+        }
+        if (_pos > start) {
+            perm.addCycle(_text.subSequence(start, _pos).toString());
+        }
+        _pos += 1;
+    }
+
+    /** Return the next whitespace-delimited word, which describes WHAT. */
+    private String word(String what) {
+        if (!skipWhitespace()) {
+            throw errorAt(_pos, "configuration ends before %s", what);
+        }
+        int start = _pos;
+        while (_pos < _text.length()
+               && !Character.isWhitespace(_text.charAt(_pos))) {
+            _pos += 1;
+        }
+        return _text.subSequence(start, _pos).toString();
+    }
+
+    /** Return the next word as a number, which describes WHAT. */
+    private int number(String what) {
+        skipWhitespace();
+        int start = _pos;
+        String word = word(what);
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException excp) {
+            throw errorAt(start, "%s is not a valid %s", word, what);
+        }
+    }
+
+    /** Advance past any whitespace, returning true iff any text
+     *  remains. */
+    private boolean skipWhitespace() {
+        while (_pos < _text.length()
+               && Character.isWhitespace(_text.charAt(_pos))) {
+            _pos += 1;
+        }
+        return _pos < _text.length();
+    }
+
+    /** Return an exception whose message is formed from MSGFORMAT and
+     *  ARGUMENTS, as for String.format, prefixed by the line and column
+     *  of the character at POS. */
+    private EnigmaException errorAt(int pos, String msgFormat,
+                                    Object... arguments) {
+        int line = 1, column = 1;
+        for (int i = 0; i < pos && i < _text.length();
+             i += Character.charCount(Character.codePointAt(_text, i))) {
+            if (_text.charAt(i) == '\n') {
+                line += 1;
+                column = 1;
+            } else {
+                column += 1;
+            }
+        }
+        return error("configuration line %d, column %d: %s", line, column,
+                     String.format(msgFormat, arguments));
+    }
+
+    /** The configuration being parsed. */
+    private final CharSequence _text;
+    /** Position of the next unread character of _text. */
+    private int _pos;
+}
@@ -0,0 +1,148 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** The suite of all JUnit tests for the ConfigParser class.
+ *  @author YunjieZhang
+ */
+public class ConfigParserTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** A small configuration, with adjacent cycles and a cycle split
+     *  across lines. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + " 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " V MZ      (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)\n"
+        + " VI MZM    (AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n";
+
+    /** Check that a configuration is parsed into the rotors it
+     *  describes. */
+    @Test
+    public void checkParse() {
+        Machine M = new ConfigParser(CONFIG).parse();
+        assertEquals(5, M.numRotors());
+        assertEquals(3, M.numPawls());
+        assertEquals(26, M.alphabet().size());
+        M.insertRotors(new String[] { "B", "BETA", "I", "V", "VI" });
+        Rotor five = M.usedRotors().get(3);
+        assertTrue(five.rotates());
+        assertEquals(UPPER_INDEX_S, five.convertForward(UPPER_INDEX_K));
+        assertTrue(M.usedRotors().get(0).reflecting());
+        assertEquals(UPPER_INDEX_B,
+                     M.usedRotors().get(0).convertForward(UPPER_INDEX_N));
+        assertTrue(M.usedRotors().get(4).notchAt(12));
+    }
+
+    /** Check that errors are reported with their line and column. */
+    @Test
+    public void checkErrorPosition() {
+        try {
+            new ConfigParser("ABC\n 2 1\n R R (AB)\n F MA (AC) (BA)\n")
+                .parse();
+            fail("repeated character accepted");
+        } catch (EnigmaException excp) {
+            assertEquals("configuration line 4, column 14: "
+                         + "character A repeated in cycles",
+                         excp.getMessage());
+        }
+    }
+
+    /** Check that a notch may be a supplementary character, and that a
+     *  bad notch after one is reported at its column in characters. */
+    @Test
+    public void checkSupplementaryNotch() {
+        String clef = new String(Character.toChars(0x1d11e));
+        String config = "AB" + clef + "C\n 3 1\n R R (AB) (" + clef + "C)\n"
+            + " N N (AC)\n F M" + clef + " (AB" + clef + ")\n";
+        Machine M = new ConfigParser(config).parse();
+        M.insertRotors(new String[] { "R", "N", "F" });
+        assertTrue(M.usedRotors().get(2).notchAt(2));
+        assertFalse(M.usedRotors().get(2).notchAt(3));
+        try {
+            new ConfigParser(config.replace("M" + clef, "M" + clef + "D"))
+                .parse();
+            fail("bad notch accepted");
+        } catch (EnigmaException excp) {
+            assertEquals("configuration line 5, column 6: "
+                         + "notch D not in alphabet", excp.getMessage());
+        }
+    }
+
+    /** Check that a machine written as a MachineImage reads back with the
+     *  same rotors, and converts messages the same way. */
+    @Test
+    public void checkImageRoundTrip() throws IOException {
+        File file = File.createTempFile("enigma", ".bin");
+        file.deleteOnExit();
+        Machine M = new ConfigParser(CONFIG).parse();
+        MachineImage.write(M, file.getPath());
+        Machine N = MachineImage.read(file.getPath());
+        assertEquals(M.numRotors(), N.numRotors());
+        assertEquals(M.numPawls(), N.numPawls());
+        assertEquals(M.availableRotors().size(), N.availableRotors().size());
+        String[] rotors = { "B", "Beta", "I", "V", "VI" };
+        M.insertRotors(rotors);
+        N.insertRotors(rotors);
+        M.setRotors("AXLM");
+        N.setRotors("AXLM");
+        M.setPlugboard(new Permutation("(HQ) (EX)", M.alphabet()));
+        N.setPlugboard(new Permutation("(HQ) (EX)", N.alphabet()));
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        assertEquals(M.convert(msg), N.convert(msg));
+    }
+
+    /** Check that the wiring of a machine whose alphabet has more
+     *  characters than fit in a char survives a MachineImage. */
+    @Test
+    public void checkLargeImage() throws IOException {
+        int size = 70000;
+        int[] chars = new int[size];
+        int[] reflect = new int[size];
+        int[] shift = new int[size];
+        for (int k = 0; k < size; k += 1) {
+            chars[k] = 0x20000 + k;
+            reflect[k] = k ^ 1;
+            shift[k] = (k + 1) % size;
+        }
+        Alphabet alpha = new Alphabet(new String(chars, 0, size));
+        List<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("R", new Permutation(reflect, alpha)));
+        all.add(new MovingRotor("F", new Permutation(shift, alpha),
+                                new String(chars, size - 1, 1)));
+        File file = File.createTempFile("enigma", ".bin");
+        file.deleteOnExit();
+        MachineImage.write(new Machine(alpha, 2, 1, all), file.getPath());
+        Machine N = MachineImage.read(file.getPath());
+        N.insertRotors(new String[] { "R", "F" });
+        Rotor rotor = N.usedRotors().get(1);
+        assertEquals(0, rotor.convertForward(size - 1));
+        assertEquals(size / 2 + 1, rotor.convertForward(size / 2));
+        assertTrue(rotor.notchAt(size - 1));
+    }
+
+    /** Index of B. */
+    private static final int UPPER_INDEX_B = 1;
+    /** Index of K. */
+    private static final int UPPER_INDEX_K = 10;
+    /** Index of S. */
+    private static final int UPPER_INDEX_S = 18;
+    /** Index of N. */
+    private static final int UPPER_INDEX_N = 13;
+
+}
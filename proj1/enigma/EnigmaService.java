@@ -0,0 +1,90 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/** A service that runs many independent encryption sessions
+ *  concurrently.  Each session processes a message file (setting lines
+ *  followed by messages, as for Main) with its own copy of a prototype
+ *  machine, whose rotors are shared by all sessions but never changed by
+ *  them.
+ *  @author YunjieZhang
+ */
+class EnigmaService {
+
+    /** A service whose sessions use copies of PROTOTYPE and each run as a
+     *  single task of EXECUTOR.  EXECUTOR should be able to run as many
+     *  tasks at once as there are sessions open at once, as does a cached
+     *  or virtual-thread-per-task pool. */
+    EnigmaService(Machine prototype, ExecutorService executor) {
+        this(prototype, executor, null);
+    }
+
+    /** A service as for EnigmaService(PROTOTYPE, EXECUTOR) whose sessions
+     *  all record their progress in METRICS, unless it is null. */
+    EnigmaService(Machine prototype, ExecutorService executor,
+                  Metrics metrics) {
+        _prototype = prototype;
+        _executor = executor;
+        _metrics = metrics;
+    }
+
+    /** Start a session that converts the messages in INPUT, writing the
+     *  results to OUTPUT, and return its future.  Errors in INPUT are
+     *  reported on OUTPUT and end the session.  Neither INPUT nor OUTPUT
+     *  is closed. */
+    Future<?> submit(Reader input, Writer output) {
+        return _executor.submit(() -> session(input, output));
+    }
+
+    /** Accept connections on SERVER until it is closed, running a session
+     *  for each that converts its input and sends the results back. */
+    void serve(ServerSocket server) throws IOException {
+        while (!server.isClosed()) {
+            Socket socket = server.accept();
+            _executor.submit(() -> {
+                try (Socket s = socket) {
+                    session(new InputStreamReader(s.getInputStream()),
+                            new OutputStreamWriter(s.getOutputStream()));
+                } catch (IOException excp) {
+                    return;
+                }
+            });
+        }
+    }
+
+    /** Stop accepting sessions, letting those already started finish. */
+    void shutdown() {
+        _executor.shutdown();
+    }
+
+    /** Convert the messages in INPUT, writing the results to OUTPUT. */
+    private void session(Reader input, Writer output) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(output));
+        try {
+            new Main(_prototype, new BufferedReader(input), out, _metrics)
+                .process();
+        } catch (EnigmaException excp) {
+            out.printf("Error: %s%n", excp.getMessage());
+            out.flush();
+        }
+    }
+
+    /** Machine copied for each session. */
+    private final Machine _prototype;
+    /** Executor running the sessions. */
+    private final ExecutorService _executor;
+    /** Where sessions record their progress, or null if they do not. */
+    private final Metrics _metrics;
+
+}
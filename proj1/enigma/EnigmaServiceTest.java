@@ -0,0 +1,123 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the EnigmaService class.
+ *  @author YunjieZhang
+ */
+public class EnigmaServiceTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Number of concurrent sessions. */
+    private static final int SESSIONS = 500;
+
+    /** Setting lines used by the sessions. */
+    private static final String[] SETTINGS = {
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+        "* C Gamma VI VII VIII MZZY (AB)",
+        "* B Beta I II III AAAA",
+    };
+
+    /** Return a random message file, seeded with SEED. */
+    private String messageFile(int seed) {
+        Random random = new Random(seed);
+        StringBuilder result = new StringBuilder();
+        for (int line = 0; line < 20; line += 1) {
+            if (line % 5 == 0) {
+                result.append(SETTINGS[random.nextInt(SETTINGS.length)]);
+            } else {
+                for (int i = random.nextInt(60); i > 0; i -= 1) {
+                    result.append((char) ('A' + random.nextInt(26)));
+                }
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Return the result of running a session of SERVICE on INPUT by
+     *  itself. */
+    private String runAlone(EnigmaService service, String input)
+        throws Exception {
+        StringWriter output = new StringWriter();
+        service.submit(new StringReader(input), output).get();
+        return output.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    /** Check a session against a known encryption. */
+    @Test
+    public void checkSession() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        EnigmaService service =
+            new EnigmaService(navalMachine(5, 3), executor);
+        assertEquals(String.format("QVPQS OKOIL PUBKJ ZPISF XDW%n"),
+                     runAlone(service, SETTINGS[0] + "\n"
+                              + "FROM his shoulder Hiawatha\n"));
+        service.shutdown();
+    }
+
+    /** Check that concurrent sessions sharing one prototype machine give
+     *  the same results as sessions run one at a time. */
+    @Test
+    public void checkConcurrentSessions() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        EnigmaService service =
+            new EnigmaService(navalMachine(5, 3), executor);
+        String[] expected = new String[SESSIONS];
+        for (int i = 0; i < SESSIONS; i += 1) {
+            expected[i] = runAlone(service, messageFile(i));
+        }
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        StringWriter[] outputs = new StringWriter[SESSIONS];
+        for (int i = 0; i < SESSIONS; i += 1) {
+            outputs[i] = new StringWriter();
+            futures.add(service.submit(new StringReader(messageFile(i)),
+                                       outputs[i]));
+        }
+        for (int i = 0; i < SESSIONS; i += 1) {
+            futures.get(i).get();
+            assertEquals(expected[i], outputs[i].toString());
+        }
+        service.shutdown();
+    }
+
+    /** Check that sessions sharing metrics record their work in them. */
+    @Test
+    public void checkMetrics() throws Exception {
+        Metrics metrics = new Metrics();
+        EnigmaService service =
+            new EnigmaService(navalMachine(5, 3),
+                              Executors.newCachedThreadPool(), metrics);
+        String input = SETTINGS[0] + "\nFROM his shoulder\n"
+            + SETTINGS[0] + "\nHiawatha\n\n";
+        runAlone(service, input);
+        runAlone(service, input);
+        service.shutdown();
+        assertEquals(4, metrics.get(Metrics.Count.MESSAGES));
+        assertEquals(2, metrics.get(Metrics.Count.SETUP_CACHE_MISSES));
+        assertEquals(4, metrics.get(Metrics.Count.LINES));
+        assertEquals(2 * 23, metrics.get(Metrics.Count.CHARACTERS));
+        assertEquals(4L, (long) metrics.getTimings().get("setup.count"));
+    }
+
+}
@@ -2,23 +2,48 @@ package enigma;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
 
 /** Class that represents a complete enigma machine.
  *  @author YunjieZhang
  */
 class Machine {
 
-    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
-     *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
-     *  available rotors. */
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS <= MAX_ROTORS
+     *  rotor slots, and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains
+     *  all the available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        if (numRotors > MAX_ROTORS) {
+            throw error("at most %d rotor slots allowed", MAX_ROTORS);
+        }
         _alphabet = alpha;
         _numRotors = numRotors;
         _numPawls = pawls;
         _usedRotors = new ArrayList<Rotor>();
         _allRotors = new ArrayList<Rotor>();
         _allRotors.addAll(allRotors);
+        _rotorsByName = new HashMap<String, Rotor>();
+        for (Rotor rotor : _allRotors) {
+            if (_rotorsByName.put(rotor.name(), rotor) != null) {
+                throw error("duplicate rotor name %s", rotor.name());
+            }
+        }
+    }
+
+    /** A new machine with the same alphabet, rotor slots, pawls and
+     *  available rotors as MODEL, but no rotors inserted. */
+    private Machine(Machine model) {
+        _alphabet = model._alphabet;
+        _numRotors = model._numRotors;
+        _numPawls = model._numPawls;
+        _usedRotors = new ArrayList<Rotor>();
+        _allRotors = model._allRotors;
+        _rotorsByName = model._rotorsByName;
     }
 
     /** Return the number of rotor slots I have. */
@@ -26,22 +51,35 @@ class Machine {
         return _numRotors;
     }
 
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return my available rotors, in the order in which they were
+     *  given.  They must not be modified. */
+    List<Rotor> availableRotors() {
+        return Collections.unmodifiableList(_allRotors);
+    }
+
     /** Return the number pawls (and thus rotating rotors) I have. */
     int numPawls() {
         return _numPawls;
     }
 
-    /** Set my rotor slots to the rotors named ROTORS from my set of
-     *  available rotors (ROTORS[0] names the reflector).
+    /** Set my rotor slots to copies of the rotors named ROTORS from my set
+     *  of available rotors (ROTORS[0] names the reflector).  The
+     *  available rotors themselves are never changed, so that machines
+     *  sharing them may be used concurrently.
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
+        _usedRotors.clear();
         for (int i = 0; i < rotors.length; i += 1) {
-            String name = rotors[i].toUpperCase();
-            for (Rotor rotor:_allRotors) {
-                if (rotor.name().toUpperCase().equals(name)) {
-                    _usedRotors.add(rotor);
-                }
+            Rotor rotor = _rotorsByName.get(rotors[i].toUpperCase());
+            if (rotor == null) {
+                throw error("unknown rotor %s", rotors[i]);
             }
+            _usedRotors.add(rotor.copy());
         }
     }
 
@@ -65,58 +103,284 @@ class Machine {
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
-        int temp = c;
+        step();
+        return translate(c);
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1) with my rotors in their
+     *  current settings, without advancing them. */
+    int translate(int c) {
+        int temp = _plugboard.permute(c);
+        int size = _usedRotors.size();
+        int rotorIndex = size - 1;
+
+        while (rotorIndex >= 0) {
+            temp = _usedRotors.get(rotorIndex).convertForward(temp);
+            rotorIndex -= 1;
+        }
+        for (int i = 1; i < size; i += 1) {
+            temp = _usedRotors.get(i).convertBackward(temp);
+        }
+        temp = _plugboard.invert(temp);
+        return temp;
+    }
+
+    /** Advance my rotors as for a single keypress. */
+    void step() {
+        long pushed = pushed(notches());
+        while (pushed != 0) {
+            _usedRotors.get(Long.numberOfTrailingZeros(pushed)).advance();
+            pushed &= pushed - 1;
+        }
+    }
+
+    /** Return a mask with bit I set iff the rotor in slot I has a pawl,
+     *  that is, iff I is one of the last numPawls() slots (never slot 0,
+     *  the reflector's). */
+    private long pawls() {
+        int size = _usedRotors.size();
+        int first = Math.max(1, size - _numPawls);
+        if (first >= size) {
+            return 0;
+        }
+        return (-1L >>> (Long.SIZE - size)) & (-1L << first);
+    }
+
+    /** Return a mask with bit I set iff the rotor in slot I has a pawl
+     *  and is at a notch.  (The notches of other rotors never matter.) */
+    private long notches() {
+        long result = 0;
+        for (long p = pawls(); p != 0; p &= p - 1) {
+            int i = Long.numberOfTrailingZeros(p);
+            if (_usedRotors.get(i).atNotch()) {
+                result |= 1L << i;
+            }
+        }
+        return result;
+    }
+
+    /** Return a mask with bit I set iff the rotor in slot I is pushed by
+     *  the next keypress (whether or not it can actually move), given
+     *  NOTCHES, as returned by notches().  Only rotors with pawls are
+     *  pushed.  The rightmost one always is.  Any other is pushed by its
+     *  own pawl if its right neighbor is at a notch, and by the pawl of
+     *  its right neighbor if it is itself at a notch and its left
+     *  neighbor also has a pawl (double stepping). */
+    private long pushed(long notches) {
+        long pawls = pawls();
+        long last = Long.highestOneBit(pawls);
+        return ((notches >>> 1) | (notches & (pawls << 1))) & pawls | last;
+    }
+
+    /** Advance my rotors as for N keypresses, without converting
+     *  anything.  While no rotor but the rightmost one would move, the
+     *  rightmost rotor is moved directly to its next notch, so the cost
+     *  is proportional to the number of notches passed rather than to
+     *  N. */
+    void seek(long n) {
+        Rotor fast = _usedRotors.get(_usedRotors.size() - 1);
+        while (n > 0) {
+            long quiet = quietSteps(n);
+            if (quiet == 0) {
+                step();
+                n -= 1;
+            } else {
+                if (fastMoves()) {
+                    fast.set((int) ((fast.setting() + quiet) % fast.size()));
+                }
+                n -= quiet;
+            }
+        }
+    }
+
+    /** Return true iff my rightmost rotor moves at every keypress: that
+     *  is, iff it has a pawl and can rotate. */
+    private boolean fastMoves() {
+        int last = _usedRotors.size() - 1;
+        return (pawls() & (1L << last)) != 0
+            && _usedRotors.get(last).rotates();
+    }
+
+    /** Return the number of keypresses, up to MAX, for which only my
+     *  rightmost rotor would move. */
+    private long quietSteps(long max) {
+        if (!quiet()) {
+            return 0;
+        }
         int size = _usedRotors.size();
-        temp = _plugboard.permute(temp);
-        for (int i = 1; i < size - 1; i += 1) {
-            boolean selfNotch =  _usedRotors.get(i).atNotch();
-            if (_usedRotors.get(i + 1).atNotch() || selfNotch) {
-                if (i != 1) {
-                    _usedRotors.get(i).setCheck(true);
+        Rotor fast = _usedRotors.get(size - 1);
+        if ((pawls() & (1L << (size - 2))) != 0
+            && _usedRotors.get(size - 2).rotates()) {
+            for (int d = 1; d <= fast.size(); d += 1) {
+                if (fast.notchAt(fast.setting() + d)) {
+                    return Math.min(max, d);
                 }
             }
         }
-        if (size > 3) {
-            if (_usedRotors.get(2).atNotch()
-                    && !_usedRotors.get(3).atNotch()) {
-                _usedRotors.get(2).setCheck(false);
+        return max;
+    }
+
+    /** Return true iff the next keypress would move only my rightmost
+     *  rotor. */
+    private boolean quiet() {
+        long pushed = pushed(notches()) & ~(1L << (_usedRotors.size() - 1));
+        while (pushed != 0) {
+            if (_usedRotors.get(Long.numberOfTrailingZeros(pushed))
+                .rotates()) {
+                return false;
             }
+            pushed &= pushed - 1;
+        }
+        return true;
+    }
+
+    /** Return the current settings of my rotors, indexed by slot. */
+    int[] snapshot() {
+        int[] result = new int[_usedRotors.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = _usedRotors.get(i).setting();
         }
-        for (int i = 1; i < size - 1; i += 1) {
-            if (_usedRotors.get(i).getCheck()) {
-                _usedRotors.get(i).advance();
-                _usedRotors.get(i).setCheck(false);
+        return result;
+    }
+
+    /** Restore my rotor settings to SNAPSHOT, as returned by
+     *  snapshot(). */
+    void restore(int[] snapshot) {
+        for (int i = 0; i < snapshot.length; i += 1) {
+            Rotor rotor = _usedRotors.get(i);
+            if (rotor.setting() != snapshot[i]) {
+                rotor.set(snapshot[i]);
             }
         }
+    }
 
-        _usedRotors.get(size - 1).advance();
+    /** Set my rotors, their settings and my plugboard to those of SAVED,
+     *  a machine with the same configuration such as a copy() of me.
+     *  SAVED is unaffected by my later use. */
+    void restore(Machine saved) {
+        _usedRotors.clear();
+        for (Rotor rotor : saved._usedRotors) {
+            _usedRotors.add(rotor.copy());
+        }
+        _plugboard = saved._plugboard;
+    }
 
-        int rotorIndex = size - 1;
+    /** Return a new machine in the same state as me whose rotors are
+     *  copies of mine, so that it may be stepped independently.  The
+     *  copy shares my available rotors and their permutations. */
+    Machine copy() {
+        Machine result = new Machine(this);
+        for (Rotor rotor : _usedRotors) {
+            result._usedRotors.add(rotor.copy());
+        }
+        result._plugboard = _plugboard;
+        return result;
+    }
 
-        while (rotorIndex >= 0) {
-            temp = _usedRotors.get(rotorIndex).convertForward(temp);
-            rotorIndex -= 1;
+    /** Set OUT[OFF .. OFF+LEN-1] to the conversions of IN[OFF .. OFF+LEN-1]
+     *  (indices in the range 0..alphabet size - 1), updating the state of
+     *  the rotors accordingly.  IN and OUT may be the same array.  The
+     *  permutation tables and settings of my rotors are copied into
+     *  arrays once per call, and while only the rightmost rotor moves,
+     *  the stepping rules are not consulted, so the inner loop is just
+     *  table loads and additions. */
+    void convert(int[] in, int[] out, int off, int len) {
+        int size = _usedRotors.size();
+        int n = _alphabet.size();
+        int[][] forward = new int[size][];
+        int[][] backward = new int[size][];
+        int[] settings = new int[size];
+        for (int k = 0; k < size; k += 1) {
+            Permutation perm = _usedRotors.get(k).permutation();
+            forward[k] = perm.forwardTable();
+            backward[k] = perm.inverseTable();
         }
-        for (int i = 1; i < size; i += 1) {
-            temp = _usedRotors.get(i).convertBackward(temp);
+        int[] plugIn = _plugboard.forwardTable();
+        int[] plugOut = _plugboard.inverseTable();
+        Rotor fast = _usedRotors.get(size - 1);
+        int last = size - 1;
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            long quiet = quietSteps(end - i);
+            int stretch = (int) quiet;
+            if (quiet == 0) {
+                step();
+                stretch = 1;
+            }
+            for (int k = 0; k < size; k += 1) {
+                settings[k] = _usedRotors.get(k).setting();
+            }
+            boolean moving = quiet > 0 && fastMoves();
+            for (int stop = i + stretch; i < stop; i += 1) {
+                if (moving) {
+                    settings[last] += 1;
+                    if (settings[last] == n) {
+                        settings[last] = 0;
+                    }
+                }
+                int x = plugIn[in[i]];
+                for (int k = last; k >= 0; k -= 1) {
+                    int s = settings[k];
+                    x += s;
+                    if (x >= n) {
+                        x -= n;
+                    }
+                    x = forward[k][x] - s;
+                    if (x < 0) {
+                        x += n;
+                    }
+                }
+                for (int k = 1; k <= last; k += 1) {
+                    int s = settings[k];
+                    x += s;
+                    if (x >= n) {
+                        x -= n;
+                    }
+                    x = backward[k][x] - s;
+                    if (x < 0) {
+                        x += n;
+                    }
+                }
+                out[i] = plugOut[x];
+            }
+            if (moving) {
+                fast.set(settings[last]);
+            }
         }
-        temp = _plugboard.invert(temp);
-        return temp;
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
      *
      *  the rotors accordingly. */
     String convert(String msg) {
-        int temp;
-        msg = msg.toUpperCase();
-        String result = "";
-        for (int i = 0; i < msg.length(); i += 1) {
-            char elem = msg.charAt(i);
-            temp = convert(_alphabet.toInt(elem));
-            result += _alphabet.toChar(temp);
+        char[] result = msg.toCharArray();
+        convert(result, 0, result.length);
+        return new String(result);
+    }
+
+    /** Replace the LEN characters of MSG starting at OFF with their
+     *  encodings/decodings, updating the state of the rotors
+     *  accordingly. */
+    void convert(char[] msg, int off, int len) {
+        if (_scratch == null) {
+            _scratch = new int[SCRATCH_SIZE];
+        }
+        for (int start = off; start < off + len; start += SCRATCH_SIZE) {
+            int n = Math.min(SCRATCH_SIZE, off + len - start);
+            for (int i = 0; i < n; i += 1) {
+                char elem = Character.toUpperCase(msg[start + i]);
+                if (!_alphabet.contains(elem)) {
+                    throw error("character %c not in alphabet", elem);
+                }
+                _scratch[i] = _alphabet.toInt(elem);
+            }
+            convert(_scratch, _scratch, 0, n);
+            for (int i = 0; i < n; i += 1) {
+                msg[start + i] = _alphabet.toChar(_scratch[i]);
+            }
         }
-        return result;
     }
 
     /** Return the rotors that are needed. */
@@ -131,14 +395,24 @@ class Machine {
     public ArrayList<Rotor> getUsedRotors() {
         return _usedRotors;
     }
+    /** Maximum number of rotor slots, one for each bit of the masks
+     *  used in stepping. */
+    static final int MAX_ROTORS = Long.SIZE;
     /** Numnber of rotors. */
     private int _numRotors;
     /** Number of pawls. */
     private int _numPawls;
     /** Collection of rotors. */
     private ArrayList<Rotor> _allRotors;
+    /** The available rotors, indexed by their (upper-case) names. */
+    private HashMap<String, Rotor> _rotorsByName;
     /** Collection of rotors that are being used. */
     private ArrayList<Rotor> _usedRotors;
+    /** Number of characters converted at a time by convert(char[], ...). */
+    private static final int SCRATCH_SIZE = 4096;
+    /** Indices of characters being converted by convert(char[], ...), or
+     *  null if not yet needed. */
+    private int[] _scratch;
     /** Plugboard. */
     private Permutation _plugboard;
 }
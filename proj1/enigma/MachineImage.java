@@ -0,0 +1,193 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+import static java.nio.file.StandardOpenOption.*;
+
+/** The binary form of a machine's configuration: its alphabet, numbers
+ *  of rotor slots and pawls, and the wiring tables, notches and types of
+ *  its available rotors, stored so that they can be loaded without any
+ *  parsing.  An image consists of, in order (all values big-endian):
+ *      int MAGIC, int VERSION,
+ *      int N (the alphabet size), N ints (its code points),
+ *      int number of rotor slots, int number of pawls,
+ *      int R (the number of available rotors),
+ *  followed by R rotors, each of which is
+ *      byte type ('M', 'N' or 'R'), short L, L chars (the name),
+ *      N ints (the image of each index under the rotor's permutation),
+ *  and, for a moving rotor, (N + 63) / 64 longs, in which bit K % 64 of
+ *  long K / 64 is set iff there is a notch at index K.
+ *  @author YunjieZhang
+ */
+class MachineImage {
+
+    /** Leading bytes of every image.  No text configuration starts
+     *  with a NUL. */
+    static final int MAGIC = 0x00454e47;
+
+    /** Version of the format written by this class. */
+    static final int VERSION = 3;
+
+    /** Return true iff BYTES, from its position on, starts with an
+     *  image. */
+    static boolean isImage(ByteBuffer bytes) {
+        return bytes.remaining() >= 4
+            && bytes.getInt(bytes.position()) == MAGIC;
+    }
+
+    /** Write the configuration of M as an image to the file named
+     *  NAME. */
+    static void write(Machine M, String name) {
+        ByteBuffer bytes = ByteBuffer.allocate(imageSize(M));
+        put(M, bytes);
+        bytes.flip();
+        try (FileChannel out = FileChannel.open(Paths.get(name), WRITE,
+                                                CREATE, TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return a machine configured from the image in the file named
+     *  NAME, which is memory-mapped. */
+    static Machine read(String name) {
+        try (FileChannel in = FileChannel.open(Paths.get(name), READ)) {
+            MappedByteBuffer bytes =
+                in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            return read(bytes);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a machine configured from the image at the position of
+     *  BYTES. */
+    static Machine read(ByteBuffer bytes) {
+        try {
+            if (bytes.getInt() != MAGIC) {
+                throw error("not a compiled configuration");
+            }
+            int version = bytes.getInt();
+            if (version != VERSION) {
+                throw error("unsupported compiled configuration version %d",
+                            version);
+            }
+            int[] chars = new int[bytes.getInt()];
+            for (int i = 0; i < chars.length; i += 1) {
+                chars[i] = bytes.getInt();
+            }
+            Alphabet alpha = new Alphabet(new String(chars, 0, chars.length));
+            int numRotors = bytes.getInt();
+            int numPawls = bytes.getInt();
+            int count = bytes.getInt();
+            List<Rotor> rotors = new ArrayList<>();
+            for (int i = 0; i < count; i += 1) {
+                rotors.add(getRotor(alpha, bytes));
+            }
+            return new Machine(alpha, numRotors, numPawls, rotors);
+        } catch (BufferUnderflowException | IllegalArgumentException
+                 | NegativeArraySizeException excp) {
+            throw error("truncated compiled configuration");
+        }
+    }
+
+    /** Return the number of bytes in the image of M. */
+    private static int imageSize(Machine M) {
+        int size = M.alphabet().size();
+        long result = 4 * 6 + 4 * size;
+        for (Rotor rotor : M.availableRotors()) {
+            result += 1 + 2 + 2 * rotor.name().length() + 4L * size;
+            if (rotor.rotates()) {
+                result += 8 * ((size + 63) / 64);
+            }
+        }
+        if (result > Integer.MAX_VALUE) {
+            throw error("configuration too large to compile");
+        }
+        return (int) result;
+    }
+
+    /** Append the image of M to BYTES. */
+    private static void put(Machine M, ByteBuffer bytes) {
+        Alphabet alpha = M.alphabet();
+        int size = alpha.size();
+        bytes.putInt(MAGIC).putInt(VERSION).putInt(size);
+        for (int i = 0; i < size; i += 1) {
+            bytes.putInt(alpha.toCodePoint(i));
+        }
+        bytes.putInt(M.numRotors()).putInt(M.numPawls());
+        bytes.putInt(M.availableRotors().size());
+        for (Rotor rotor : M.availableRotors()) {
+            bytes.put((byte) (rotor.reflecting() ? 'R'
+                              : rotor.rotates() ? 'M' : 'N'));
+            bytes.putShort((short) rotor.name().length());
+            for (int i = 0; i < rotor.name().length(); i += 1) {
+                bytes.putChar(rotor.name().charAt(i));
+            }
+            for (int k : rotor.permutation().forwardTable()) {
+                bytes.putInt(k);
+            }
+            if (rotor.rotates()) {
+                long[] notches = new long[(size + 63) / 64];
+                for (int k = 0; k < size; k += 1) {
+                    if (rotor.notchAt(k)) {
+                        notches[k / 64] |= 1L << (k % 64);
+                    }
+                }
+                for (long word : notches) {
+                    bytes.putLong(word);
+                }
+            }
+        }
+    }
+
+    /** Return the next rotor in BYTES, whose characters are in ALPHA. */
+    private static Rotor getRotor(Alphabet alpha, ByteBuffer bytes) {
+        int size = alpha.size();
+        char type = (char) bytes.get();
+        char[] name = new char[bytes.getShort() & 0xffff];
+        for (int i = 0; i < name.length; i += 1) {
+            name[i] = bytes.getChar();
+        }
+        int[] forward = new int[size];
+        for (int k = 0; k < size; k += 1) {
+            forward[k] = bytes.getInt();
+        }
+        Permutation perm = new Permutation(forward, alpha);
+        switch (type) {
+        case 'M':
+            StringBuilder notches = new StringBuilder();
+            for (int w = 0; w < (size + 63) / 64; w += 1) {
+                long word = bytes.getLong();
+                for (int k = w * 64; word != 0; k += 1, word >>>= 1) {
+                    if ((word & 1) != 0 && k >= size) {
+                        throw error("notch out of range in compiled "
+                                    + "configuration");
+                    } else if ((word & 1) != 0) {
+                        notches.appendCodePoint(alpha.toCodePoint(k));
+                    }
+                }
+            }
+            return new MovingRotor(new String(name), perm,
+                                   notches.toString());
+        case 'N':
+            return new FixedRotor(new String(name), perm);
+        case 'R':
+            return new Reflector(new String(name), perm);
+        default:
+            throw error("bad rotor type in compiled configuration");
+        }
+    }
+
+}
@@ -0,0 +1,319 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author YunjieZhang
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with NUMROTORS slots and PAWLS pawls holding the
+     *  naval rotors named ROTORS in the setting SETTING. */
+    private Machine machine(int numRotors, int pawls, String[] rotors,
+                            String setting) {
+        Machine result = navalMachine(numRotors, pawls);
+        result.insertRotors(rotors);
+        result.setRotors(setting);
+        result.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                            UPPER));
+        return result;
+    }
+
+    /** Return a random message of N upper-case letters. */
+    private char[] randomMessage(int n) {
+        Random random = new Random(n);
+        char[] result = new char[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = (char) ('A' + random.nextInt(UPPER.size()));
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    /** Check the conversion of a message against a known encryption. */
+    @Test
+    public void checkConvert() {
+        Machine M = machine(5, 3,
+                            new String[] { "B", "Beta", "III", "IV", "I" },
+                            "AXLE");
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     M.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    /** Check that seeking is equivalent to stepping, including across
+     *  double steps, on machines with more pawls, and on one with none. */
+    @Test
+    public void checkSeek() {
+        String[][] rotors = {
+            { "B", "Beta", "III", "IV", "I" },
+            { "C", "Gamma", "VI", "VII", "VIII" },
+        };
+        for (String[] names : rotors) {
+            for (int n : new int[] { 0, 1, 25, 26, 700, 17000 }) {
+                Machine stepped = machine(5, 3, names, "ADQZ");
+                Machine sought = machine(5, 3, names, "ADQZ");
+                for (int i = 0; i < n; i += 1) {
+                    stepped.step();
+                }
+                sought.seek(n);
+                assertArrayEquals(msg(names[2], "seek %d", n),
+                                  stepped.snapshot(), sought.snapshot());
+            }
+        }
+        Machine stepped = machine(7, 5,
+                                  new String[] { "B", "Beta", "I", "II",
+                                                 "III", "IV", "V" },
+                                  "AQEVJZ");
+        Machine sought = stepped.copy();
+        for (int i = 0; i < 5000; i += 1) {
+            stepped.step();
+        }
+        sought.seek(5000);
+        assertArrayEquals(stepped.snapshot(), sought.snapshot());
+        stepped = machine(5, 0, new String[] { "B", "Beta", "III", "IV",
+                                               "I" }, "ADQZ");
+        sought = stepped.copy();
+        for (int i = 0; i < 30; i += 1) {
+            stepped.step();
+        }
+        sought.seek(30);
+        assertArrayEquals(stepped.snapshot(), sought.snapshot());
+    }
+
+    /** Wiring of the wide B reflector of the three-rotor Enigma, which
+     *  differs from the thin B reflector of the naval machine. */
+    private static final String WIDE_B =
+        "(AY) (BR) (CU) (DH) (EQ) (FS) (GL) (IP) (JX) (KN) (MO) (TZ) (VW)";
+
+    /** Check the stepping of a three-rotor machine, whose leftmost
+     *  moving rotor is next to the reflector, across a double step, and
+     *  a known encryption by it. */
+    @Test
+    public void checkThreeRotors() {
+        List<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("B", new Permutation(WIDE_B, UPPER)));
+        for (String name : new String[] { "I", "II", "III" }) {
+            all.add(new MovingRotor(name,
+                                    new Permutation(NAVALA.get(name), UPPER),
+                                    NAVAL_NOTCHES.get(name)));
+        }
+        Machine M = new Machine(UPPER, 4, 3, all);
+        M.insertRotors(new String[] { "B", "I", "II", "III" });
+        M.setPlugboard(new Permutation("", UPPER));
+        M.setRotors("ADU");
+        String[] expected = { "ADV", "AEW", "BFX", "BFY" };
+        for (String setting : expected) {
+            M.step();
+            int[] snapshot = M.snapshot();
+            String actual = "";
+            for (int i = 1; i < snapshot.length; i += 1) {
+                actual += UPPER.toChar(snapshot[i]);
+            }
+            assertEquals(setting, actual);
+        }
+        M.setRotors("AAA");
+        assertEquals("BDZGO", M.convert("AAAAA"));
+    }
+
+    /** Numbers of slots and pawls of the machines whose stepping
+     *  checkRandomStepping checks. */
+    private static final int[][] STEPPING_SHAPES = {
+        { 4, 3 }, { 5, 3 }, { 6, 5 }, { 7, 4 }, { 7, 5 }, { 8, 5 },
+        { 8, 7 }, { 9, 6 }, { 9, 8 },
+    };
+
+    /** Check stepping against a pawl-by-pawl model of the machine on
+     *  random machines of several shapes with random notches.  In the
+     *  model, the pawl in front of each moving rotor but the rightmost
+     *  rests on the rotor to its right, and engages when that rotor is
+     *  at a notch, pushing both rotors; the rightmost pawl always
+     *  engages its rotor.  A rotor pushed by two pawls moves once. */
+    @Test
+    public void checkRandomStepping() {
+        Random random = new Random(61);
+        for (int trial = 0; trial < 5 * STEPPING_SHAPES.length;
+             trial += 1) {
+            int size = STEPPING_SHAPES[trial % STEPPING_SHAPES.length][0];
+            int pawls = STEPPING_SHAPES[trial % STEPPING_SHAPES.length][1];
+            List<Rotor> all = new ArrayList<>();
+            String[] names = new String[size];
+            boolean[][] notches = new boolean[size][UPPER.size()];
+            int[] settings = new int[size];
+            for (int i = 0; i < size; i += 1) {
+                Permutation perm = new Permutation("", UPPER);
+                names[i] = "R" + i;
+                if (i == 0) {
+                    all.add(new Reflector(names[i], perm));
+                } else if (i < size - pawls) {
+                    all.add(new FixedRotor(names[i], perm));
+                } else {
+                    String notch = "";
+                    for (int k = 1 + random.nextInt(3); k > 0; k -= 1) {
+                        int c = random.nextInt(UPPER.size());
+                        notches[i][c] = true;
+                        notch += UPPER.toChar(c);
+                    }
+                    all.add(new MovingRotor(names[i], perm, notch));
+                    settings[i] = random.nextInt(UPPER.size());
+                }
+            }
+            Machine M = new Machine(UPPER, size, pawls, all);
+            M.insertRotors(names);
+            for (int i = 1; i < size; i += 1) {
+                M.usedRotors().get(i).set(settings[i]);
+            }
+            for (int step = 0; step < 2000; step += 1) {
+                boolean[] moves = new boolean[size];
+                for (int pawl = size - pawls; pawl < size; pawl += 1) {
+                    if (pawl == size - 1) {
+                        moves[pawl] = true;
+                    } else if (notches[pawl + 1][settings[pawl + 1]]) {
+                        moves[pawl] = moves[pawl + 1] = true;
+                    }
+                }
+                for (int i = 0; i < size; i += 1) {
+                    if (moves[i]) {
+                        settings[i] = (settings[i] + 1) % UPPER.size();
+                    }
+                }
+                M.step();
+                assertArrayEquals(msg("step", "%d slots, %d pawls, "
+                                      + "trial %d, step %d", size, pawls,
+                                      trial, step),
+                                  settings, M.snapshot());
+            }
+        }
+    }
+
+    /** Check that snapshots restore the settings of a machine. */
+    @Test
+    public void checkSnapshot() {
+        Machine M = machine(5, 3,
+                            new String[] { "B", "Beta", "III", "IV", "I" },
+                            "AXLE");
+        int[] start = M.snapshot();
+        String first = M.convert("HELLOWORLD");
+        M.restore(start);
+        assertEquals(first, M.convert("HELLOWORLD"));
+    }
+
+    /** Check that parallel conversion matches sequential conversion. */
+    @Test
+    public void checkParallel() {
+        String[] names = { "B", "Beta", "VI", "VII", "VIII" };
+        Machine sequential = machine(5, 3, names, "AZMY");
+        Machine parallel = machine(5, 3, names, "AZMY");
+        char[] expected = randomMessage(ParallelEncoder.MIN_CHUNK * 5 + 3);
+        char[] actual = Arrays.copyOf(expected, expected.length);
+        sequential.convert(expected, 0, expected.length);
+        new ParallelEncoder().convert(parallel, actual, 0, actual.length);
+        assertArrayEquals(expected, actual);
+        assertArrayEquals(sequential.snapshot(), parallel.snapshot());
+    }
+
+    /** Check that a compiled machine matches the machine it compiles,
+     *  both before and after its settings repeat, and when its table
+     *  fills before they do, and again after they are rewound. */
+    @Test
+    public void checkCompiled() {
+        String[] names = { "B", "Beta", "III", "IV", "I" };
+        char[] expected = randomMessage(40000);
+        char[] actual = Arrays.copyOf(expected, expected.length);
+        char[] limited = Arrays.copyOf(expected, expected.length);
+        machine(5, 3, names, "AXLE").convert(expected, 0, expected.length);
+        CompiledMachine compiled =
+            new CompiledMachine(machine(5, 3, names, "AXLE"), 1 << 21);
+        compiled.convert(actual, 0, actual.length);
+        assertArrayEquals(expected, actual);
+        assertEquals(26 * 25 * 26, compiled.period());
+        CompiledMachine small =
+            new CompiledMachine(machine(5, 3, names, "AXLE"),
+                                100 * (26 + CompiledMachine.ROW_OVERHEAD));
+        small.convert(limited, 0, limited.length);
+        assertArrayEquals(expected, limited);
+        assertEquals(100, small.rows());
+        char[] again = randomMessage(30000);
+        char[] reference = Arrays.copyOf(again, again.length);
+        char[] limitedAgain = Arrays.copyOf(again, again.length);
+        machine(5, 3, names, "AXLE").convert(reference, 0, again.length);
+        compiled.rewind();
+        compiled.convert(again, 0, again.length);
+        assertArrayEquals(reference, again);
+        small.rewind();
+        small.convert(limitedAgain, 0, limitedAgain.length);
+        assertArrayEquals(reference, limitedAgain);
+    }
+
+    /** Check that inserting rotors replaces the previous ones, and that
+     *  rotor names are looked up regardless of case. */
+    @Test
+    public void checkInsertRotors() {
+        Machine M = machine(5, 3,
+                            new String[] { "B", "Beta", "III", "IV", "I" },
+                            "AXLE");
+        M.insertRotors(new String[] { "c", "GAMMA", "vi", "Vii", "VIII" });
+        assertEquals(5, M.usedRotors().size());
+        assertEquals("GAMMA", M.usedRotors().get(1).name());
+    }
+
+    /** Check that an unknown rotor name is reported. */
+    @Test(expected = EnigmaException.class)
+    public void checkUnknownRotor() {
+        machine(5, 3, new String[] { "B", "Beta", "III", "IV", "IX" },
+                "AXLE");
+    }
+
+    /** Check that batch conversion matches conversion one character at a
+     *  time, on machines of each shape in STEPPING_SHAPES and on one with
+     *  no pawls. */
+    @Test
+    public void checkBatch() {
+        String[] moving = { "I", "II", "III", "IV", "V", "VI", "VII",
+                            "VIII" };
+        List<int[]> shapes = new ArrayList<>(Arrays.asList(STEPPING_SHAPES));
+        shapes.add(new int[] { 5, 0 });
+        for (int[] shape : shapes) {
+            String[] names = new String[shape[0]];
+            names[0] = "B";
+            System.arraycopy(moving, 0, names, 1, shape[0] - 1);
+            String setting = "AZMYQEVJ".substring(0, shape[0] - 1);
+            Machine[] pair = {
+                machine(shape[0], shape[1], names, setting),
+                machine(shape[0], shape[1], names, setting),
+            };
+            char[] message = randomMessage(20000);
+            int[] in = new int[message.length];
+            int[] out = new int[message.length];
+            for (int i = 0; i < in.length; i += 1) {
+                in[i] = UPPER.toInt(message[i]);
+            }
+            pair[0].convert(in, out, 0, in.length);
+            for (int i = 0; i < in.length; i += 1) {
+                assertEquals(msg("batch", "%d slots, %d pawls, position %d",
+                                 shape[0], shape[1], i),
+                             pair[1].convert(in[i]), out[i]);
+            }
+            assertArrayEquals(msg("batch", "%d slots, %d pawls", shape[0],
+                                  shape[1]),
+                              pair[1].snapshot(), pair[0].snapshot());
+        }
+    }
+
+}
@@ -1,12 +1,35 @@
 package enigma;
 
-import java.io.File;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.util.ArrayList;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
 import static enigma.EnigmaException.*;
+import static enigma.Metrics.Count.*;
+import static enigma.Metrics.Stage.*;
+import static java.nio.file.StandardOpenOption.*;
 
 /** Enigma simulator.
  *  @author YunjieZhang
@@ -21,171 +44,649 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.
+     *
+     *  The arguments may be preceded by the option --bulk, in which case
+     *  both an input and an output file are required.  The input is then
+     *  memory-mapped and processed as single-byte ASCII, the output is
+     *  written through a direct buffer, and the throughput is reported on
+     *  the standard error.  The option --parallel converts long message
+     *  lines in parallel, with identical results.  The option --compiled
+     *  records the substitution made for each rotor setting after every
+     *  setting line, so that once the settings repeat each character is
+     *  converted by a table lookup.
+     *
+     *  With the option --serve PORT, only ARGS[0] is given.  Each
+     *  connection to PORT on the loopback interface is then an
+     *  independent session, whose input is processed as a message file
+     *  and whose output is sent back on the connection.
+     *
+     *  With the option --save-config FILE, only ARGS[0] is given.  The
+     *  configuration it describes is written to FILE in the binary form
+     *  described in MachineImage, which may then be given as ARGS[0] in
+     *  place of the text configuration; it is loaded without parsing.
+     *
+     *  The option --stats collects counts of messages, lines and
+     *  characters and the times taken by each stage of processing,
+     *  publishes them over JMX as enigma:type=Metrics, and prints them on
+     *  the standard error on exit.
+     *
+     *  In --bulk mode, the state of the conversion is saved every 64MB
+     *  of input (or every N bytes, with the option --checkpoint N) in the
+     *  file ARGS[2].checkpoint, which is deleted when the conversion
+     *  completes.  If a conversion dies, running it again with the
+     *  option --resume continues from the last checkpoint, rather than
+     *  from the start of the input.
+     *
+     *  The option --pipeline splits the input into messages at its
+     *  setting lines and converts the messages concurrently, as described
+     *  in MessagePipeline, with identical results. */
     public static void main(String... args) {
+        Main main = null;
         try {
-            new Main(args).process();
+            main = new Main(args);
+            if (main._imageName != null) {
+                MachineImage.write(main.readConfig(), main._imageName);
+            } else if (main._port >= 0) {
+                main.serve();
+            } else {
+                main.process();
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
+        } finally {
+            if (main != null && main._metrics != null) {
+                main._metrics.dump(System.err);
+            }
         }
         System.exit(1);
     }
 
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
+        int first = 0;
+        boolean stats = false;
+        while (first < args.length && args[first].startsWith("--")) {
+            if (args[first].equals("--bulk")) {
+                _bulk = true;
+            } else if (args[first].equals("--parallel")) {
+                _encoder = new ParallelEncoder();
+            } else if (args[first].equals("--compiled")) {
+                _compiling = true;
+            } else if (args[first].equals("--pipeline")) {
+                _pipelined = true;
+            } else if (args[first].equals("--resume")) {
+                _resuming = true;
+            } else if (args[first].equals("--checkpoint")
+                       && first + 1 < args.length) {
+                first += 1;
+                try {
+                    _checkpointInterval = Long.parseLong(args[first]);
+                } catch (NumberFormatException excp) {
+                    throw error("bad checkpoint interval %s", args[first]);
+                }
+                if (_checkpointInterval <= 0) {
+                    throw error("bad checkpoint interval %s", args[first]);
+                }
+            } else if (args[first].equals("--stats")) {
+                stats = true;
+            } else if (args[first].equals("--save-config")
+                       && first + 1 < args.length) {
+                first += 1;
+                _imageName = args[first];
+            } else if (args[first].equals("--serve")
+                       && first + 1 < args.length) {
+                first += 1;
+                try {
+                    _port = Integer.parseInt(args[first]);
+                } catch (NumberFormatException excp) {
+                    _port = -1;
+                }
+                if (_port < 0 || _port > MAX_PORT) {
+                    throw error("bad port %s", args[first]);
+                }
+            } else {
+                throw error("unknown option %s", args[first]);
+            }
+            first += 1;
+        }
+        if (stats) {
+            _metrics = new Metrics();
+            _metrics.register();
+        }
+        args = Arrays.copyOfRange(args, first, args.length);
+        int chunkSize = _encoder == null ? CHUNK_SIZE : PARALLEL_CHUNK_SIZE;
+        _chunk = new char[chunkSize];
+        _groups = new char[chunkSize + chunkSize / GROUP_SIZE + 1];
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
         _config = getInput(args[0]);
+        if (_port >= 0 || _imageName != null) {
+            if (args.length != 1 || _bulk) {
+                throw error("--serve and --save-config take only a "
+                            + "configuration file");
+            }
+            return;
+        }
+        if (_resuming && !_bulk) {
+            throw error("--resume requires --bulk");
+        }
+        if (_pipelined && (_bulk || _compiling || _encoder != null)) {
+            throw error("--pipeline cannot be combined with --bulk, "
+                        + "--compiled or --parallel");
+        }
+        if (_bulk) {
+            if (args.length != 3) {
+                throw error("--bulk requires input and output files");
+            }
+            _checkpointFile = Paths.get(args[2] + CHECKPOINT_SUFFIX);
+            if (_resuming) {
+                _resumeFrom = Checkpoint.read(_checkpointFile);
+            }
+            _inChannel = getChannel(args[1], READ);
+            try {
+                _inSize = _inChannel.size();
+            } catch (IOException excp) {
+                throw error("could not open %s", args[1]);
+            }
+            if (_resumeFrom == null) {
+                _outChannel = getChannel(args[2], WRITE, CREATE,
+                                         TRUNCATE_EXISTING);
+            } else {
+                _outChannel = getChannel(args[2], WRITE);
+            }
+            _outBytes = ByteBuffer.allocateDirect(BULK_BUFFER_SIZE);
+            return;
+        }
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _input = getReader(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new BufferedReader(new InputStreamReader(System.in));
         }
 
         if (args.length > 2) {
             _output = getOutput(args[2]);
         } else {
-            _output = System.out;
+            _output = new PrintWriter(new BufferedWriter(
+                          new OutputStreamWriter(System.out)));
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** A session that applies copies of PROTOTYPE, a machine configured
+     *  from a configuration file, to the messages in INPUT, sending the
+     *  results to OUTPUT and recording its progress in METRICS, unless it
+     *  is null. */
+    Main(Machine prototype, Reader input, PrintWriter output,
+         Metrics metrics) {
+        _prototype = prototype;
+        _metrics = metrics;
+        _alphabet = prototype.alphabet();
+        _input = input;
+        _output = output;
+        _chunk = new char[CHUNK_SIZE];
+        _groups = new char[CHUNK_SIZE + CHUNK_SIZE / GROUP_SIZE + 1];
+    }
+
+    /** Return the contents of the file named NAME, memory-mapped. */
+    private ByteBuffer getInput(String name) {
+        try (FileChannel in = FileChannel.open(Paths.get(name), READ)) {
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a buffered Reader reading from the file named NAME. */
+    private Reader getReader(String name) {
+        try {
+            return new BufferedReader(new FileReader(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a FileChannel for the file named NAME, opened with
+     *  OPTIONS. */
+    private FileChannel getChannel(String name,
+                                   OpenOption... options) {
         try {
-            return new Scanner(new File(name));
+            return FileChannel.open(Paths.get(name), options);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a buffered PrintWriter writing to the file named NAME. */
+    private PrintWriter getOutput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new PrintWriter(new BufferedWriter(new FileWriter(name)));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
     /** Configure an Enigma machine from the contents of configuration
-     *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
-    private void process() {
+     *  file _config (or copy _prototype, if present) and apply it to the
+     *  messages in _input, sending the results to _output. */
+    void process() {
+        long start = System.nanoTime();
         try {
-            Machine newMachine = readConfig();
-            String first = _input.nextLine();
-            if (first.charAt(0) != '*') {
-                throw new NoSuchElementException();
-            }
-            setUp(newMachine, first);
-            for (int i = 0; i < newMachine.numRotors()
-                    - newMachine.numPawls(); i++) {
-                Rotor temp = newMachine.usedRotors().get(i);
-                if (temp.rotates()) {
+            if (_pipelined) {
+                new MessagePipeline(readConfig(), PIPELINE_WORKERS,
+                                    PIPELINE_BUFFER, _metrics)
+                    .process(_input, _output);
+                return;
+            }
+            Machine newMachine =
+                _prototype == null ? readConfig() : _prototype.copy();
+            int c;
+            if (_resumeFrom != null) {
+                resume(newMachine, _resumeFrom);
+                int letters = _resumeFrom.letters();
+                if (letters >= 0) {
+                    convertLine(newMachine, read(), letters);
+                }
+            } else {
+                c = read();
+                if (c != '*') {
                     throw new NoSuchElementException();
                 }
+                setUp(newMachine, readLine(c));
+                for (int i = 0; i < newMachine.numRotors()
+                        - newMachine.numPawls(); i++) {
+                    Rotor temp = newMachine.usedRotors().get(i);
+                    if (temp.rotates()) {
+                        throw new NoSuchElementException();
+                    }
+                }
             }
-            while (_input.hasNextLine()) {
-                String currentLine = _input.nextLine();
-                if (currentLine.isEmpty()) {
-                    _output.println();
+            while (true) {
+                checkpoint(newMachine, -1);
+                c = read();
+                if (c == -1) {
+                    break;
+                } else if (c == '\n') {
+                    write(NEWLINE, 1);
+                } else if (c == '*') {
+                    setUp(newMachine, readLine(c));
                 } else {
-                    if (currentLine.charAt(0) == '*') {
-                        setUp(newMachine, currentLine);
-                    } else {
-                        String msg = "";
-                        Scanner currentScan = new Scanner(currentLine);
-                        while (currentScan.hasNext()) {
-                            String help = currentScan.next();
-                            String converted = newMachine.convert(help);
-                            msg += converted;
-                        }
-                        printMessageLine(msg);
-                    }
+                    convertLine(newMachine, c, 0);
                 }
             }
         } catch (NoSuchElementException e) {
             throw error("Not begin with *");
+        } finally {
+            flush();
+        }
+        if (_checkpointFile != null) {
+            try {
+                Files.deleteIfExists(_checkpointFile);
+            } catch (IOException excp) {
+                throw error("could not remove %s", _checkpointFile);
+            }
+        }
+        if (_bulk) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double megabytes = _inSize / 1e6;
+            System.err.printf("%.1f MB in %.3f s (%.1f MB/s)%n",
+                              megabytes, seconds, megabytes / seconds);
         }
+    }
 
+    /** Apply copies of my prototype to the messages in INPUT, as for
+     *  process(), sending the results to OUTPUT, which is flushed but not
+     *  closed.  Set-up machines are remembered from one call to the
+     *  next. */
+    void process(Reader input, PrintWriter output) {
+        _input = input;
+        _output = output;
+        _inPos = _inLimit = 0;
+        process();
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
+    /** Position the input and output at the offsets recorded in
+     *  CHECKPOINT, and set M as it was there. */
+    private void resume(Machine M, Checkpoint checkpoint) {
+        if (checkpoint.input() > _inSize) {
+            throw error("checkpoint is beyond the end of the input");
+        }
+        try {
+            if (checkpoint.output() > _outChannel.size()) {
+                throw error("checkpoint is beyond the end of the output");
+            }
+            _outChannel.truncate(checkpoint.output());
+            _outChannel.position(checkpoint.output());
+        } catch (IOException excp) {
+            throw error("could not position output");
+        }
+        _mapStart = checkpoint.input();
+        _mapped = null;
+        _lastCheckpoint = checkpoint.input();
+        setUp(M, checkpoint.setting());
+        int[] rotors = checkpoint.rotors();
+        if (rotors.length != M.numRotors()) {
+            throw error("checkpoint does not match configuration");
+        }
+        M.restore(rotors);
+        if (_compiling) {
+            _compiled = new CompiledMachine(M, COMPILED_LIMIT);
+        }
+        _setupSettings = rotors;
+        _keypresses = 0;
+    }
+
+    /** If at least _checkpointInterval bytes of input have been consumed
+     *  since the last checkpoint, make all output so far durable and
+     *  then record a checkpoint, given that M is the current machine and
+     *  that LETTERS letters of the current line have been converted (-1
+     *  if at the start of a line).  Does nothing unless in bulk mode. */
+    private void checkpoint(Machine M, int letters) {
+        if (_checkpointFile == null) {
+            return;
+        }
+        long input = _mapStart + (_mapped == null ? 0 : _mapped.position());
+        if (input - _lastCheckpoint < _checkpointInterval) {
+            return;
+        }
+        drain();
+        long output;
+        try {
+            _outChannel.force(false);
+            output = _outChannel.position();
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+        new Checkpoint(input, output, _setting, settings(M), letters)
+            .write(_checkpointFile);
+        _lastCheckpoint = input;
+    }
+
+    /** Return the current settings of the rotors of M, the current
+     *  machine.  When compiling, M itself may lag behind, so its
+     *  settings are found by seeking from those after the last setting
+     *  line. */
+    private int[] settings(Machine M) {
+        if (_compiled == null) {
+            return M.snapshot();
+        }
+        Machine at = M.copy();
+        at.restore(_setupSettings);
+        at.seek(_keypresses);
+        return at.snapshot();
+    }
+
+    /** Configure an Enigma machine from the contents of configuration
+     *  file _config and serve sessions using it on port _port of the
+     *  loopback interface until the process is killed. */
+    private void serve() {
+        EnigmaService service =
+            new EnigmaService(readConfig(), Executors.newCachedThreadPool(),
+                              _metrics);
         try {
-            _allInfo = new ArrayList<String>();
-            _alphabet = new Alphabet(_config.next());
-            _allRotors = new ArrayList<Rotor>();
-            if (!_config.hasNext()) {
-                throw new NoSuchElementException();
+            service.serve(new ServerSocket(_port, 0,
+                                           InetAddress.getLoopbackAddress()));
+        } catch (IOException excp) {
+            throw error("could not serve on port %d", _port);
+        }
+    }
+
+    /** Return the next character of _input, or -1 at the end of input. */
+    private int read() {
+        if (_bulk) {
+            return readMapped();
+        }
+        if (_inPos == _inLimit) {
+            try {
+                _inLimit = _input.read(_inBuf, 0, _inBuf.length);
+            } catch (IOException excp) {
+                throw error("could not read input");
+            }
+            _inPos = 0;
+            if (_inLimit <= 0) {
+                _inLimit = 0;
+                return -1;
+            }
+        }
+        char c = _inBuf[_inPos];
+        _inPos += 1;
+        return c;
+    }
+
+    /** Return the next byte of _inChannel as a character, or -1 at the
+     *  end of input, mapping successive windows of the file as needed. */
+    private int readMapped() {
+        if (_mapped == null || !_mapped.hasRemaining()) {
+            if (_mapped != null) {
+                _mapStart += _mapped.capacity();
             }
-            int numRotors = _config.nextInt();
-            int numPawls = _config.nextInt();
-            while (_config.hasNext()) {
-                _allInfo.add(_config.next());
+            if (_mapStart >= _inSize) {
+                return -1;
             }
-            while (_index < _allInfo.size()) {
-                _allRotors.add(readRotor());
+            long len = Math.min(MAP_SIZE, _inSize - _mapStart);
+            try {
+                _mapped = _inChannel.map(FileChannel.MapMode.READ_ONLY,
+                                         _mapStart, len);
+            } catch (IOException excp) {
+                throw error("could not read input");
             }
-            return new Machine(_alphabet, numRotors, numPawls, _allRotors);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
         }
+        return _mapped.get() & 0xFF;
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Write the first N characters of BUF to the output. */
+    private void write(char[] buf, int n) {
+        if (!_bulk) {
+            _output.write(buf, 0, n);
+            return;
+        }
+        for (int i = 0; i < n; i += 1) {
+            if (!_outBytes.hasRemaining()) {
+                drain();
+            }
+            _outBytes.put((byte) buf[i]);
+        }
+    }
+
+    /** Write the contents of _outBytes to _outChannel. */
+    private void drain() {
+        _outBytes.flip();
         try {
-            String name = _allInfo.get(_index).toUpperCase();
-            String mNotches = _allInfo.get(_index + 1).toUpperCase();
-            _index += 2;
-            Permutation newPerm = new Permutation("", _alphabet);
-            while (_index < _allInfo.size()) {
-                String cycleElem = _allInfo.get(_index);
-                int cycleLen = cycleElem.length();
-                if (cycleElem.charAt(0) == '(') {
-                    if (cycleElem.charAt(cycleLen - 1) != ')') {
-                        throw new NoSuchElementException();
-                    }
-                    String[] temp = cycleElem.split("\\W");
-                    int len = temp.length;
-                    for (int i = 0; i < len; i += 1) {
-                        if (temp[i].length() > 0) {
-                            String part = temp[i];
-                            newPerm.addCycle(part);
-                        }
-                    }
-                    _index += 1;
-                } else {
-                    break;
-                }
+            while (_outBytes.hasRemaining()) {
+                _outChannel.write(_outBytes);
             }
-            char type = mNotches.charAt(0);
-            if (type == 'M') {
-                String notches = mNotches.substring(1, mNotches.length());
-                return new MovingRotor(name, newPerm, notches);
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+        _outBytes.clear();
+    }
+
+    /** Send any buffered output to its destination. */
+    private void flush() {
+        if (!_bulk) {
+            _output.flush();
+            return;
+        }
+        drain();
+        try {
+            _outChannel.close();
+            _inChannel.close();
+        } catch (IOException excp) {
+            throw error("could not close files");
+        }
+    }
+
+    /** Return the rest of the current input line, whose first character
+     *  C has already been read. */
+    private String readLine(int c) {
+        StringBuilder line = new StringBuilder();
+        while (c != -1 && c != '\n') {
+            line.append((char) c);
+            c = read();
+        }
+        return line.toString();
+    }
+
+    /** Convert the rest of the current message line, whose first
+     *  character C has already been read and of which COUNT letters have
+     *  already been converted, with M and print the result in groups of
+     *  five.  Only a bounded chunk of the line is held in memory at a
+     *  time. */
+    private void convertLine(Machine M, int c, int count) {
+        if (_metrics != null && count == 0) {
+            _metrics.count(LINES, 1);
+        }
+        int len = 0;
+        while (c != -1 && c != '\n') {
+            if (!Character.isWhitespace(c)) {
+                _chunk[len] = (char) c;
+                len += 1;
+                if (len == _chunk.length) {
+                    count = printGroups(M, len, count);
+                    len = 0;
+                    checkpoint(M, count);
+                }
             }
-            if (type == 'N') {
-                return new FixedRotor(name, newPerm);
+            c = read();
+        }
+        printGroups(M, len, count);
+        write(NEWLINE, 1);
+    }
+
+    /** Convert the first LEN characters of _chunk in place with M and
+     *  print them in groups of five, given that COUNT characters of the
+     *  current line have already been printed.  Returns the new count. */
+    private int printGroups(Machine M, int len, int count) {
+        long stepping = 0, start = 0;
+        if (_metrics != null) {
+            _metrics.count(CHARACTERS, len);
+            if (_compiled == null && _encoder == null) {
+                stepping = timeStepping(M, len);
             }
-            if (type == 'R') {
-                return new Reflector(name, newPerm);
-            } else {
-                throw new NoSuchElementException();
+            start = System.nanoTime();
+        }
+        _keypresses += len;
+        if (_compiled != null) {
+            _compiled.convert(_chunk, 0, len);
+        } else if (_encoder != null) {
+            _encoder.convert(M, _chunk, 0, len);
+        } else {
+            M.convert(_chunk, 0, len);
+        }
+        if (_metrics != null) {
+            long now = System.nanoTime();
+            _metrics.time(TRAVERSAL, now - start - stepping);
+            start = now;
+        }
+        int n = 0;
+        for (int i = 0; i < len; i += 1) {
+            _groups[n] = _chunk[i];
+            n += 1;
+            count += 1;
+            if (count % GROUP_SIZE == 0) {
+                _groups[n] = ' ';
+                n += 1;
             }
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
         }
+        write(_groups, n);
+        if (_metrics != null) {
+            _metrics.time(FORMAT, System.nanoTime() - start);
+        }
+        return count;
+    }
+
+    /** Record in _metrics the time taken to step M LEN times, leaving M
+     *  as it was, and return that time in nanoseconds.  Stepping is not
+     *  otherwise separable from the rest of conversion. */
+    private long timeStepping(Machine M, int len) {
+        int[] saved = M.snapshot();
+        long start = System.nanoTime();
+        for (int i = 0; i < len; i += 1) {
+            M.step();
+        }
+        long result = System.nanoTime() - start;
+        M.restore(saved);
+        _metrics.time(STEPPING, result);
+        return result;
+    }
+
+    /** Return an Enigma machine configured from the contents of configuration
+     *  file _config, which is either text or a MachineImage. */
+    private Machine readConfig() {
+        long start = System.nanoTime();
+        Machine result;
+        if (MachineImage.isImage(_config)) {
+            result = MachineImage.read(_config.duplicate());
+        } else {
+            result = new ConfigParser(Charset.defaultCharset()
+                                      .decode(_config.duplicate())).parse();
+        }
+        _alphabet = result.alphabet();
+        if (_metrics != null) {
+            _metrics.time(CONFIG, System.nanoTime() - start);
+        }
+        return result;
     }
 
     /** Set M according to the specification given on SETTINGS,
      *  which must have the format specified in the assignment. */
     private void setUp(Machine M, String settings) {
+        long start = _metrics == null ? 0 : System.nanoTime();
+        String key = String.join(" ", settings.trim().split("\\s+"));
+        Machine saved = _setups.get(key);
+        if (saved != null) {
+            M.restore(saved);
+        } else {
+            parseSetUp(M, settings);
+            _setups.put(key, M.copy());
+        }
+        if (_compiling) {
+            _compiled = compiled(M, key);
+        }
+        if (_checkpointFile != null) {
+            _setting = settings;
+            _setupSettings = M.snapshot();
+            _keypresses = 0;
+        }
+        if (_metrics != null) {
+            _metrics.count(MESSAGES, 1);
+            _metrics.count(saved != null ? SETUP_CACHE_HITS
+                           : SETUP_CACHE_MISSES, 1);
+            _metrics.time(SETUP, System.nanoTime() - start);
+        }
+    }
+
+    /** Return the compiled machine for the setting line whose normalized
+     *  text is KEY, given that M has just been set up from it: the one
+     *  in _compiledSetups, rewound, or else a new one compiled from a
+     *  copy of M.  Discards the least recently used compiled machines
+     *  while their tables together exceed COMPILED_LIMIT. */
+    private CompiledMachine compiled(Machine M, String key) {
+        CompiledMachine result = _compiledSetups.get(key);
+        if (result != null) {
+            result.rewind();
+        } else {
+            result = new CompiledMachine(M.copy(), COMPILED_LIMIT);
+            _compiledSetups.put(key, result);
+        }
+        long total = 0;
+        for (CompiledMachine compiled : _compiledSetups.values()) {
+            total += compiled.bytes();
+        }
+        Iterator<CompiledMachine> eldest =
+            _compiledSetups.values().iterator();
+        while (total > COMPILED_LIMIT && _compiledSetups.size() > 1) {
+            total -= eldest.next().bytes();
+            eldest.remove();
+        }
+        return result;
+    }
+
+    /** Set M according to the specification given on SETTINGS, as for
+     *  setUp, without consulting _setups. */
+    private void parseSetUp(Machine M, String settings) {
         try {
-            M.getUsedRotors().clear();
             Scanner newLine = new Scanner(settings);
             String temp = newLine.next();
             if (!temp.equals("*")) {
@@ -212,38 +713,176 @@ public final class Main {
         }
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        int theRest = msg.length() % 5;
-        for (int i = 0; i < msg.length() / 5; i += 1) {
-            _output.print(msg.substring(5 * i, 5 * (i + 1)));
-            _output.print(" ");
-        }
-        _output.print(msg.substring(msg.length() - theRest, msg.length()));
-        _output.println();
+    /** Number of setting lines whose machines are kept in _setups. */
+    private static final int SETUP_CACHE_SIZE = 64;
 
-    }
+    /** Copies of the machines set up for the most recently used setting
+     *  lines (with whitespace normalized), in order of use. */
+    private final LinkedHashMap<String, Machine> _setups =
+        new LinkedHashMap<String, Machine>(SETUP_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Machine>
+                                                eldest) {
+                return size() > SETUP_CACHE_SIZE;
+            }
+        };
+
+    /** Compiled machines for the most recently used setting lines
+     *  (with whitespace normalized), in order of use. */
+    private final LinkedHashMap<String, CompiledMachine> _compiledSetups =
+        new LinkedHashMap<String, CompiledMachine>(SETUP_CACHE_SIZE, 0.75f,
+                                                   true) {
+            @Override
+            protected boolean
+                removeEldestEntry(Map.Entry<String, CompiledMachine>
+                                  eldest) {
+                return size() > SETUP_CACHE_SIZE;
+            }
+        };
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
+    /** Number of letters in each printed group. */
+    private static final int GROUP_SIZE = 5;
+
+    /** Number of message letters converted at a time. */
+    private static final int CHUNK_SIZE = 4096;
+
+    /** Size of the windows in which bulk input is mapped. */
+    private static final long MAP_SIZE = 1 << 30;
+
+    /** Size of the direct buffer holding bulk output. */
+    private static final int BULK_BUFFER_SIZE = 1 << 16;
+
+    /** Line terminator written after each output line. */
+    private static final char[] NEWLINE = { '\n' };
+
+    /** True iff messages are converted concurrently by a
+     *  MessagePipeline. */
+    private boolean _pipelined;
+
+    /** Number of workers converting messages when pipelined. */
+    private static final int PIPELINE_WORKERS =
+        Runtime.getRuntime().availableProcessors();
+
+    /** Largest number of characters of messages and their results held
+     *  in memory at once when pipelined. */
+    private static final int PIPELINE_BUFFER = 1 << 24;
+
+    /** Suffix added to the name of the output file to form the name of
+     *  the checkpoint file. */
+    static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    /** Default number of input bytes between checkpoints. */
+    private static final long CHECKPOINT_INTERVAL = 1 << 26;
+
+    /** Number of input bytes between checkpoints. */
+    private long _checkpointInterval = CHECKPOINT_INTERVAL;
+
+    /** File holding the latest checkpoint, or null if not
+     *  checkpointing. */
+    private Path _checkpointFile;
+
+    /** True iff resuming from a checkpoint was requested. */
+    private boolean _resuming;
+
+    /** Checkpoint from which to resume, or null if starting afresh. */
+    private Checkpoint _resumeFrom;
+
+    /** Input offset of the last checkpoint. */
+    private long _lastCheckpoint;
+
+    /** The current setting line, when checkpointing. */
+    private String _setting;
+
+    /** Rotor settings just after the current setting line, when
+     *  checkpointing. */
+    private int[] _setupSettings;
+
+    /** Number of letters converted since the current setting line. */
+    private long _keypresses;
+
+    /** Where progress is recorded, or null if it is not. */
+    private Metrics _metrics;
+
+    /** Name of the file to which the configuration is written as a
+     *  MachineImage, if any. */
+    private String _imageName;
+
+    /** Port on which to serve sessions, or -1 if not serving. */
+    private int _port = -1;
+
+    /** Largest port number. */
+    private static final int MAX_PORT = 65535;
+
+    /** Machine copied for each message file, or null if the machine is
+     *  read from _config. */
+    private Machine _prototype;
+
+    /** True iff processing in bulk (memory-mapped) mode. */
+    private boolean _bulk;
+
+    /** Channel from which bulk input is mapped. */
+    private FileChannel _inChannel;
+
+    /** Size of _inChannel in bytes. */
+    private long _inSize;
+
+    /** Currently mapped window of _inChannel. */
+    private MappedByteBuffer _mapped;
+
+    /** Offset in _inChannel of the start of _mapped. */
+    private long _mapStart;
+
+    /** Channel to which bulk output is written. */
+    private FileChannel _outChannel;
+
+    /** Buffer of bulk output awaiting a write to _outChannel. */
+    private ByteBuffer _outBytes;
+
     /** Source of input messages. */
-    private Scanner _input;
+    private Reader _input;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Buffer of characters read from _input. */
+    private char[] _inBuf = new char[CHUNK_SIZE];
 
-    /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    /** Position of the next unread character in _inBuf. */
+    private int _inPos;
+
+    /** Number of valid characters in _inBuf. */
+    private int _inLimit;
+
+    /** Number of message letters converted at a time by _encoder. */
+    private static final int PARALLEL_CHUNK_SIZE = 1 << 20;
+
+    /** Encoder for long message lines, or null if converting
+     *  sequentially. */
+    private ParallelEncoder _encoder;
 
-    /** A collection of all rotors. */
-    private ArrayList<Rotor> _allRotors;
+    /** Largest total size in bytes, including their overhead, of the
+     *  tables of the compiled machines kept in _compiledSetups.  The
+     *  table of the current machine may grow to this size before others
+     *  are discarded at the next setting line. */
+    private static final long COMPILED_LIMIT = 1 << 26;
 
-    /** Store all information. */
-    private ArrayList<String> _allInfo;
+    /** True iff machines are compiled after each setting line. */
+    private boolean _compiling;
 
-    /** Index of information pieces in _allInfo. */
-    private int _index = 0;
+    /** Compiled form of the current machine, or null if not
+     *  compiling. */
+    private CompiledMachine _compiled;
+
+    /** Message letters awaiting conversion. */
+    private char[] _chunk;
+
+    /** Converted letters of _chunk, separated into groups. */
+    private char[] _groups;
+
+    /** Text of machine configuration. */
+    private ByteBuffer _config;
+
+    /** File for encoded/decoded messages. */
+    private PrintWriter _output;
 
 }
@@ -0,0 +1,151 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the Main class.
+ *  @author YunjieZhang
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + " 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " V MZ      (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)\n"
+        + " VI MZM    (AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n";
+
+    /** Return a random message file of several messages, including
+     *  lines longer than a chunk. */
+    private String messageFile() {
+        Random random = new Random(21);
+        StringBuilder result = new StringBuilder();
+        for (int line = 0; line < 60; line += 1) {
+            if (line % 15 == 0) {
+                result.append(line % 30 == 0 ? "* B Beta I V VI AXLE (HQ)"
+                              : "* B Beta VI I V MZZY (AB) (CD)");
+            } else {
+                int len = random.nextInt(line % 7 == 0 ? 10000 : 80);
+                for (int i = 0; i < len; i += 1) {
+                    result.append((char) ('A' + random.nextInt(26)));
+                }
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Return a temporary file, deleted on exit, containing TEXT. */
+    private File tempFile(String text) throws IOException {
+        File result = File.createTempFile("enigma", ".txt");
+        result.deleteOnExit();
+        Files.write(result.toPath(), text.getBytes("US-ASCII"));
+        return result;
+    }
+
+    /** Run Main with the options OPTIONS followed by ARGS, as from the
+     *  command line, except that errors are thrown rather than causing an
+     *  exit. */
+    private void run(List<String> options, String... args) {
+        List<String> all = new ArrayList<>(options);
+        all.addAll(Arrays.asList(args));
+        new Main(all.toArray(new String[0])).process();
+    }
+
+    /* ***** TESTS ***** */
+
+    /** Check that a bulk conversion that dies after writing checkpoints
+     *  resumes from the last of them with the same result as an
+     *  uninterrupted conversion, with and without compiled machines. */
+    @Test
+    public void checkResume() throws IOException {
+        String config = tempFile(CONFIG).getPath();
+        String text = messageFile();
+        int bad = text.length() * 4 / 5;
+        while (text.charAt(bad) == '\n' || text.charAt(bad - 1) == '\n') {
+            bad += 1;
+        }
+        String broken = text.substring(0, bad) + "1"
+            + text.substring(bad + 1);
+        for (String mode : new String[] { "", "--compiled" }) {
+            List<String> options = new ArrayList<>();
+            options.add("--bulk");
+            if (!mode.isEmpty()) {
+                options.add(mode);
+            }
+            File input = tempFile(text);
+            File expected = tempFile("");
+            File output = tempFile("");
+            File checkpoint = new File(output + Main.CHECKPOINT_SUFFIX);
+            checkpoint.deleteOnExit();
+            run(options, config, input.getPath(), expected.getPath());
+
+            Files.write(input.toPath(), broken.getBytes("US-ASCII"));
+            try {
+                run(options, "--checkpoint", "3000", config,
+                    input.getPath(), output.getPath());
+                fail("bad character accepted");
+            } catch (EnigmaException excp) {
+                assertTrue(checkpoint.exists());
+            }
+            Checkpoint last = Checkpoint.read(checkpoint.toPath());
+            assertTrue(last.input() > 0 && last.input() <= bad);
+
+            Files.write(input.toPath(), text.getBytes("US-ASCII"));
+            run(options, "--resume", "--checkpoint", "3000", config,
+                input.getPath(), output.getPath());
+            assertEquals(mode,
+                         new String(Files.readAllBytes(expected.toPath())),
+                         new String(Files.readAllBytes(output.toPath())));
+            assertFalse(checkpoint.exists());
+        }
+    }
+
+    /** Check that --stats may be given twice, and by successive sessions
+     *  in the same JVM. */
+    @Test
+    public void checkRepeatedStats() throws IOException {
+        String config = tempFile(CONFIG).getPath();
+        String input = tempFile(messageFile()).getPath();
+        for (int i = 0; i < 2; i += 1) {
+            run(Arrays.asList("--stats", "--stats"), config, input,
+                tempFile("").getPath());
+        }
+    }
+
+    /** Check that --serve rejects ports that are not numbers in the range
+     *  0 .. 65535. */
+    @Test
+    public void checkBadPort() throws IOException {
+        String config = tempFile(CONFIG).getPath();
+        for (String port : new String[] { "70000", "-1", "65536", "http" }) {
+            try {
+                run(Arrays.asList("--serve", port), config);
+                fail("port " + port + " accepted");
+            } catch (EnigmaException excp) {
+                assertEquals("bad port " + port, excp.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,327 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static enigma.EnigmaException.*;
+
+/** Converts a message file by splitting it at its setting lines into
+ *  messages, which are independent, and converting them concurrently.
+ *  The calling thread reads and splits the input, a pool of workers
+ *  converts the messages, each worker with its own session (and so its
+ *  own machine and cache of set-up machines), and a writer thread sends
+ *  the results to the output in input order.  Results that arrive early
+ *  wait in a bounded reorder buffer, which counts the characters both
+ *  of messages and of their results; when it is full, reading stops
+ *  until the writer catches up.  A message too long for the buffer is
+ *  instead converted as it is read, by the reading thread, once all
+ *  earlier results have been written.  Thus memory use is bounded
+ *  however long the input or its messages.  The output is identical to
+ *  that of a single session.
+ *  @author YunjieZhang
+ */
+class MessagePipeline {
+
+    /** A pipeline whose WORKERS workers use copies of PROTOTYPE, that
+     *  holds at most about MAXBUFFERED characters of messages that are
+     *  read but not yet written and of their results, and whose sessions
+     *  record their progress in METRICS, unless it is null. */
+    MessagePipeline(Machine prototype, int workers, int maxBuffered,
+                    Metrics metrics) {
+        _prototype = prototype;
+        _workers = workers;
+        _maxBuffered = maxBuffered;
+        _metrics = metrics;
+    }
+
+    /** Convert the messages in INPUT, writing the results to OUTPUT.  An
+     *  error in a message is thrown after the results of all earlier
+     *  messages, and as much of the result of that message as a single
+     *  session would have written, have been written. */
+    void process(Reader input, PrintWriter output) {
+        ExecutorService pool = Executors.newFixedThreadPool(_workers);
+        EnigmaException failure = null;
+        ThreadLocal<Main> sessions = ThreadLocal.withInitial(
+            () -> new Main(_prototype, null, null, _metrics));
+        BlockingQueue<Future<Result>> pending =
+            new ArrayBlockingQueue<>(PENDING_PER_WORKER * _workers);
+        Semaphore room = new Semaphore(_maxBuffered);
+        OrderedWriter writer =
+            new OrderedWriter(pending, room, _maxBuffered, output);
+        writer.start();
+        try {
+            BufferedReader lines = new BufferedReader(input);
+            StringBuilder message = new StringBuilder();
+            boolean any = false;
+            String line;
+            while (writer.failure() == null && failure == null) {
+                line = lines.readLine();
+                if (line == null || (line.startsWith("*")
+                                     && message.length() > 0)) {
+                    if (message.length() > 0 || !any) {
+                        submit(message.toString(), pool, sessions,
+                               pending, room);
+                        any = true;
+                    }
+                    message.setLength(0);
+                }
+                if (line == null) {
+                    break;
+                }
+                message.append(line).append('\n');
+                if (cost(message.length()) > _maxBuffered) {
+                    failure = convertInline(new MessageReader(message, lines),
+                                            sessions.get(), writer, room,
+                                            output);
+                    message.setLength(0);
+                    any = true;
+                }
+            }
+            pending.put(DONE);
+            writer.join();
+        } catch (IOException excp) {
+            throw error("could not read input");
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+        if (writer.failure() != null) {
+            throw writer.failure();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Return the largest number of characters of the reorder buffer
+     *  that a message of LENGTH characters and its result may occupy.  No
+     *  line of a result is more than 6/5 as long as the line of the
+     *  message that produced it. */
+    private static long cost(long length) {
+        return length + (length * 6 + 4) / 5;
+    }
+
+    /** Wait until all results in the reorder buffer have been written by
+     *  WRITER, whose room is ROOM, and then convert MESSAGE with SESSION,
+     *  writing the result directly to OUTPUT.  Returns the error that
+     *  ended the conversion, or null if none. */
+    private EnigmaException convertInline(Reader message, Main session,
+                                          OrderedWriter writer,
+                                          Semaphore room,
+                                          PrintWriter output)
+        throws InterruptedException {
+        room.acquire(_maxBuffered);
+        try {
+            if (writer.failure() == null) {
+                session.process(message, output);
+            }
+            return null;
+        } catch (EnigmaException excp) {
+            return excp;
+        } catch (RuntimeException excp) {
+            return error("conversion failed: %s", excp);
+        } finally {
+            room.release(_maxBuffered);
+        }
+    }
+
+    /** Reserve room for MESSAGE and its result in the reorder buffer,
+     *  ROOM, waiting if necessary, and then start converting it with a
+     *  session from SESSIONS in POOL, adding its future to PENDING.  The
+     *  room reserved for the result beyond its actual size is released
+     *  as soon as it is converted. */
+    private void submit(String message, ExecutorService pool,
+                        ThreadLocal<Main> sessions,
+                        BlockingQueue<Future<Result>> pending,
+                        Semaphore room) throws InterruptedException {
+        int reserved = (int) cost(message.length());
+        room.acquire(reserved);
+        pending.put(pool.submit(() -> {
+            StringWriter text = new StringWriter();
+            EnigmaException failure = null;
+            try {
+                sessions.get().process(new StringReader(message),
+                                       new PrintWriter(text));
+            } catch (EnigmaException excp) {
+                failure = excp;
+            } catch (RuntimeException excp) {
+                failure = error("conversion failed: %s", excp);
+            }
+            int size = (int) Math.min(reserved, message.length()
+                                      + (long) text.getBuffer().length());
+            room.release(reserved - size);
+            return new Result(text.toString(), failure, size);
+        }));
+    }
+
+    /** A reader of the rest of a long message: the text of the message
+     *  read so far, followed by the input up to its next setting line,
+     *  which is left unread. */
+    private static class MessageReader extends Reader {
+        /** A reader of the message whose first whole lines are START and
+         *  whose remaining lines are next in LINES. */
+        MessageReader(CharSequence start, BufferedReader lines) {
+            _start = start.toString();
+            _lines = lines;
+            _atLineStart = true;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (_pos < _start.length()) {
+                int n = Math.min(len, _start.length() - _pos);
+                _start.getChars(_pos, _pos + n, buf, off);
+                _pos += n;
+                return n;
+            }
+            if (_atLineStart) {
+                _lines.mark(1);
+                int c = _lines.read();
+                _lines.reset();
+                if (c == -1 || c == '*') {
+                    return -1;
+                }
+            }
+            int n = 0;
+            _atLineStart = false;
+            while (n < len && !_atLineStart) {
+                int c = _lines.read();
+                if (c == -1) {
+                    break;
+                }
+                buf[off + n] = (char) c;
+                n += 1;
+                _atLineStart = c == '\n';
+            }
+            return n == 0 ? -1 : n;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /** Text of the message read before this reader was created. */
+        private final String _start;
+        /** The rest of the input. */
+        private final BufferedReader _lines;
+        /** Number of characters of _start already read. */
+        private int _pos;
+        /** True iff the next character of _lines starts a line. */
+        private boolean _atLineStart;
+    }
+
+    /** The outcome of converting one message. */
+    private static class Result {
+        /** The output TEXT of a message occupying SIZE characters of the
+         *  reorder buffer, whose conversion ended with FAILURE, or null if
+         *  it succeeded. */
+        Result(String text, EnigmaException failure, int size) {
+            _text = text;
+            _failure = failure;
+            _size = size;
+        }
+
+        /** Output of the message. */
+        private final String _text;
+        /** Error ending the conversion, or null. */
+        private final EnigmaException _failure;
+        /** Characters of the reorder buffer occupied by the message. */
+        private final int _size;
+    }
+
+    /** The thread writing results in order. */
+    private static class OrderedWriter extends Thread {
+        /** A writer taking futures from PENDING until DONE, writing their
+         *  results to OUTPUT, and releasing their room in ROOM, which
+         *  holds at most MAXBUFFERED characters. */
+        OrderedWriter(BlockingQueue<Future<Result>> pending, Semaphore room,
+                      int maxBuffered, PrintWriter output) {
+            _pending = pending;
+            _room = room;
+            _maxBuffered = maxBuffered;
+            _output = output;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Future<Result> next;
+                while ((next = _pending.take()) != DONE) {
+                    Result result = result(next);
+                    if (_failure == null) {
+                        _output.write(result._text);
+                        _failure = result._failure;
+                    }
+                    _room.release(result._size);
+                }
+            } catch (InterruptedException excp) {
+                _failure = error("interrupted");
+            } finally {
+                _output.flush();
+            }
+        }
+
+        /** Return the result of FUTURE, waiting for it if necessary.  A
+         *  worker that died produces a result with no text that ends the
+         *  output, and whose room in the buffer is unknown, so that the
+         *  reader must no longer wait for room. */
+        private Result result(Future<Result> future)
+            throws InterruptedException {
+            try {
+                return future.get();
+            } catch (ExecutionException excp) {
+                return new Result("", error("conversion failed: %s",
+                                            excp.getCause()), _maxBuffered);
+            }
+        }
+
+        /** Return the error that has ended output, or null if none. */
+        EnigmaException failure() {
+            return _failure;
+        }
+
+        /** Futures of the results, in input order. */
+        private final BlockingQueue<Future<Result>> _pending;
+        /** Room in the reorder buffer. */
+        private final Semaphore _room;
+        /** Size of the reorder buffer. */
+        private final int _maxBuffered;
+        /** Destination of the results. */
+        private final PrintWriter _output;
+        /** The error that has ended output, or null. */
+        private volatile EnigmaException _failure;
+    }
+
+    /** Marks the end of the futures in a queue of pending results. */
+    private static final Future<Result> DONE =
+        CompletableFuture.completedFuture(null);
+
+    /** Number of messages that may be pending per worker. */
+    private static final int PENDING_PER_WORKER = 4;
+
+    /** Machine copied by each session. */
+    private final Machine _prototype;
+    /** Number of worker threads. */
+    private final int _workers;
+    /** Largest number of characters of messages buffered at once. */
+    private final int _maxBuffered;
+    /** Where sessions record their progress, or null if they do not. */
+    private final Metrics _metrics;
+
+}
@@ -0,0 +1,133 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MessagePipeline class.
+ *  @author YunjieZhang
+ */
+public class MessagePipelineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Setting lines used by the messages. */
+    private static final String[] SETTINGS = {
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+        "* C Gamma VI VII VIII MZZY (AB)",
+        "* B Beta I II III AAAA",
+    };
+
+    /** Return a random message file of MESSAGES messages of up to
+     *  MAXLINES lines each, seeded with SEED. */
+    private String messageFile(int seed, int messages, int maxLines) {
+        Random random = new Random(seed);
+        StringBuilder result = new StringBuilder();
+        for (int m = 0; m < messages; m += 1) {
+            result.append(SETTINGS[random.nextInt(SETTINGS.length)]);
+            result.append('\n');
+            for (int line = random.nextInt(maxLines); line > 0; line -= 1) {
+                for (int i = random.nextInt(60); i > 0; i -= 1) {
+                    result.append((char) ('A' + random.nextInt(26)));
+                }
+                result.append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return the output of a single session converting INPUT, with any
+     *  error message appended. */
+    private String sequential(String input) {
+        StringWriter output = new StringWriter();
+        try {
+            new Main(navalMachine(5, 3), null, null, null)
+                .process(new StringReader(input), new PrintWriter(output));
+        } catch (EnigmaException excp) {
+            output.write("Error: " + excp.getMessage());
+        }
+        return output.toString();
+    }
+
+    /** Return the output of PIPELINE converting INPUT, with any error
+     *  message appended. */
+    private String pipelined(MessagePipeline pipeline, String input) {
+        StringWriter output = new StringWriter();
+        try {
+            pipeline.process(new StringReader(input),
+                             new PrintWriter(output));
+        } catch (EnigmaException excp) {
+            output.write("Error: " + excp.getMessage());
+        }
+        return output.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    /** Check that pipelined conversion matches a single session, with a
+     *  reorder buffer large enough for many messages, with one that holds
+     *  a few, and with one that holds less than a message, so that most
+     *  messages are converted as they are read. */
+    @Test
+    public void checkOrder() {
+        for (int buffer : new int[] { 1 << 20, 1000, 100 }) {
+            MessagePipeline pipeline =
+                new MessagePipeline(navalMachine(5, 3), 4, buffer, null);
+            for (int seed = 0; seed < 5; seed += 1) {
+                String input = messageFile(seed, 200, 20);
+                assertEquals(msg("order", "seed %d, buffer %d", seed,
+                                 buffer),
+                             sequential(input), pipelined(pipeline, input));
+            }
+        }
+    }
+
+    /** Check that an error ends the output where a single session's
+     *  would end, and that input not starting with a setting line is
+     *  rejected. */
+    @Test
+    public void checkErrors() {
+        MessagePipeline pipeline =
+            new MessagePipeline(navalMachine(5, 3), 4, 1 << 20, null);
+        String input = messageFile(7, 50, 10);
+        int bad = input.indexOf("\n*", input.length() / 2) - 3;
+        input = input.substring(0, bad) + "1" + input.substring(bad + 1);
+        String expected = sequential(input);
+        assertTrue(expected.contains("Error: "));
+        assertEquals(expected, pipelined(pipeline, input));
+        assertEquals(sequential("HELLO\n"), pipelined(pipeline, "HELLO\n"));
+        assertEquals(sequential(""), pipelined(pipeline, ""));
+    }
+
+    /** Check that messages much longer than the reorder buffer are
+     *  converted as a single session would, including an error in one of
+     *  them, and messages without a final newline. */
+    @Test
+    public void checkLongMessages() {
+        MessagePipeline pipeline =
+            new MessagePipeline(navalMachine(5, 3), 4, 1000, null);
+        String input = messageFile(11, 20, 400);
+        assertEquals(sequential(input), pipelined(pipeline, input));
+        String unterminated = input.substring(0, input.length() - 1);
+        assertEquals(sequential(unterminated),
+                     pipelined(pipeline, unterminated));
+        int bad = input.lastIndexOf("\n*") - 3;
+        input = input.substring(0, bad) + "1" + input.substring(bad + 1);
+        String expected = sequential(input);
+        assertTrue(expected.contains("Error: "));
+        assertEquals(expected, pipelined(pipeline, input));
+    }
+
+}
@@ -0,0 +1,204 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static enigma.EnigmaException.*;
+
+/** Counters and timing histograms for the stages of processing
+ *  messages.  A Metrics may be shared by concurrent sessions.  Code that
+ *  records metrics holds a Metrics that is null when they are disabled,
+ *  so that disabled metrics cost one test per recording site.
+ *  @author YunjieZhang
+ */
+class Metrics implements MetricsMXBean {
+
+    /** Things counted. */
+    enum Count {
+        /** Messages (setting lines). */
+        MESSAGES,
+        /** Message lines converted. */
+        LINES,
+        /** Characters converted. */
+        CHARACTERS,
+        /** Setting lines whose machine was found in the setup cache. */
+        SETUP_CACHE_HITS,
+        /** Setting lines parsed afresh. */
+        SETUP_CACHE_MISSES;
+    }
+
+    /** Timed stages. */
+    enum Stage {
+        /** Reading the configuration. */
+        CONFIG,
+        /** Processing a setting line. */
+        SETUP,
+        /** Stepping the rotors for a chunk of characters. */
+        STEPPING,
+        /** Passing a chunk of characters through the rotors and
+         *  plugboard. */
+        TRAVERSAL,
+        /** Grouping and writing a chunk of converted characters. */
+        FORMAT;
+    }
+
+    /** New, zeroed metrics. */
+    Metrics() {
+        _counts = new LongAdder[Count.values().length];
+        for (int i = 0; i < _counts.length; i += 1) {
+            _counts[i] = new LongAdder();
+        }
+        _timings = new Histogram[Stage.values().length];
+        for (int i = 0; i < _timings.length; i += 1) {
+            _timings[i] = new Histogram();
+        }
+    }
+
+    /** Add N to COUNT. */
+    void count(Count count, long n) {
+        _counts[count.ordinal()].add(n);
+    }
+
+    /** Record that one occurrence of STAGE took NANOS nanoseconds. */
+    void time(Stage stage, long nanos) {
+        _timings[stage.ordinal()].record(nanos);
+    }
+
+    /** Return the current value of COUNT. */
+    long get(Count count) {
+        return _counts[count.ordinal()].sum();
+    }
+
+    /** Make me visible through the platform MBean server as
+     *  enigma:type=Metrics, in place of any Metrics registered before,
+     *  as by an earlier session in the same JVM. */
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            synchronized (Metrics.class) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+            }
+        } catch (JMException excp) {
+            throw error("could not register metrics: %s", excp.getMessage());
+        }
+    }
+
+    /** Print a summary of my counters and timings on OUT. */
+    void dump(PrintStream out) {
+        for (Count count : Count.values()) {
+            out.printf("%-22s %12d%n", name(count), get(count));
+        }
+        out.printf("%-22s %12s %12s %12s %12s %12s%n", "stage (ns)", "count",
+                   "total", "p50", "p99", "max");
+        for (Stage stage : Stage.values()) {
+            Histogram h = _timings[stage.ordinal()];
+            out.printf("%-22s %12d %12d %12d %12d %12d%n", name(stage),
+                       h.count(), h.total(), h.quantile(0.5),
+                       h.quantile(0.99), h.max());
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Count count : Count.values()) {
+            result.put(name(count), get(count));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getTimings() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            Histogram h = _timings[stage.ordinal()];
+            String name = name(stage);
+            result.put(name + ".count", h.count());
+            result.put(name + ".totalNanos", h.total());
+            result.put(name + ".p50Nanos", h.quantile(0.5));
+            result.put(name + ".p99Nanos", h.quantile(0.99));
+            result.put(name + ".maxNanos", h.max());
+        }
+        return result;
+    }
+
+    /** Return the name under which VALUE is reported. */
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase().replace('_', '.');
+    }
+
+    /** A histogram of durations, with a bucket for each power of 2
+     *  nanoseconds, so that quantiles are accurate to within a factor
+     *  of 2. */
+    private static class Histogram {
+
+        /** Record a duration of NANOS nanoseconds. */
+        void record(long nanos) {
+            nanos = Math.max(nanos, 0);
+            _buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+            _count.increment();
+            _total.add(nanos);
+            _max.accumulateAndGet(nanos, Math::max);
+        }
+
+        /** Return the number of durations recorded. */
+        long count() {
+            return _count.sum();
+        }
+
+        /** Return the sum of the durations recorded. */
+        long total() {
+            return _total.sum();
+        }
+
+        /** Return the longest duration recorded. */
+        long max() {
+            return _max.get();
+        }
+
+        /** Return an upper bound on the Q-quantile (0 <= Q <= 1) of the
+         *  durations recorded, or 0 if there are none. */
+        long quantile(double q) {
+            long rank = (long) Math.ceil(q * count());
+            long seen = 0;
+            for (int b = 0; b < _buckets.length(); b += 1) {
+                seen += _buckets.get(b);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(b == 0 ? 0 : (1L << b) - 1, max());
+                }
+            }
+            return 0;
+        }
+
+        /** _buckets.get(B) is the number of durations D recorded with
+         *  2**(B-1) <= D < 2**B (just D == 0 for B == 0). */
+        private final AtomicLongArray _buckets = new AtomicLongArray(65);
+        /** Number of durations recorded. */
+        private final LongAdder _count = new LongAdder();
+        /** Sum of durations recorded. */
+        private final LongAdder _total = new LongAdder();
+        /** Longest duration recorded. */
+        private final AtomicLong _max = new AtomicLong();
+    }
+
+    /** Name under which I am registered with the MBean server. */
+    static final String OBJECT_NAME = "enigma:type=Metrics";
+
+    /** _counts[C.ordinal()] is the value of count C. */
+    private final LongAdder[] _counts;
+    /** _timings[S.ordinal()] records the durations of stage S. */
+    private final Histogram[] _timings;
+
+}
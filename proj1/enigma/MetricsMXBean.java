@@ -0,0 +1,18 @@
+package enigma;
+
+import java.util.Map;
+
+/** The management interface through which Metrics are published over
+ *  JMX.
+ *  @author YunjieZhang
+ */
+public interface MetricsMXBean {
+
+    /** Return the value of each counter, by name. */
+    Map<String, Long> getCounters();
+
+    /** Return, for each stage S, S.count, S.totalNanos, S.p50Nanos,
+     *  S.p99Nanos and S.maxNanos. */
+    Map<String, Long> getTimings();
+
+}
@@ -1,7 +1,5 @@
 package enigma;
 
-import java.util.ArrayList;
-
 import static enigma.EnigmaException.*;
 
 /** Class that represents a rotating rotor in the enigma machine.
@@ -16,10 +14,16 @@ class MovingRotor extends Rotor {
      */
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
-        _notches = new ArrayList<Character>();
-        for (int i = 0; i < notches.length(); i += 1) {
-            _notches.add(notches.charAt(i));
-        }
+        Alphabet alpha = perm.alphabet();
+        _notches = new boolean[alpha.size()];
+        notches.codePoints().forEach(c -> {
+            int k = alpha.toIndex(c);
+            if (k < 0) {
+                throw error("notch %s not in alphabet",
+                            new String(Character.toChars(c)));
+            }
+            _notches[k] = true;
+        });
     }
 
     @Override
@@ -28,17 +32,26 @@ class MovingRotor extends Rotor {
         return true;
     }
 
-    /** Overriden atNotch method. */
     @Override
     boolean atNotch() {
-        for (int i = 0; i < _notches.size(); i += 1) {
-            char current = _notches.get(i);
-            int temp = this.permutation().alphabet().toInt(current);
-            if (this.setting() == temp) {
-                return true;
+        return _notches[setting()];
+    }
+
+    /** Overriden notchAt method. */
+    @Override
+    boolean notchAt(int posn) {
+        return _notches[permutation().wrap(posn)];
+    }
+
+    /** Return the characters at which my notches lie. */
+    String notches() {
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < _notches.length; k += 1) {
+            if (_notches[k]) {
+                result.appendCodePoint(alphabet().toCodePoint(k));
             }
         }
-        return false;
+        return result.toString();
     }
 
     @Override
@@ -46,7 +59,8 @@ class MovingRotor extends Rotor {
         set(setting() + 1);
     }
 
-    /** The notches on the rotor. */
-    private ArrayList<Character> _notches;
+    /** _notches[K] is true iff I have a notch at setting K.  Shared by
+     *  my copies. */
+    private final boolean[] _notches;
 
 }
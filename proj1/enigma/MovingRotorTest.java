@@ -77,6 +77,32 @@ public class MovingRotorTest {
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
 
+    /** Test that a full turn brings a rotor back to its 0 setting. */
+    @Test
+    public void checkRotorFullTurn() {
+        setRotor("I", NAVALA, "");
+        for (int i = 0; i < UPPER.size(); i += 1) {
+            rotor.advance();
+        }
+        assertEquals(0, rotor.setting());
+        checkRotor("Rotor I full turn", UPPER_STRING, NAVALA_MAP.get("I"));
+    }
+
+    /** Test that a rotor with several notches is at a notch exactly at
+     *  each of them. */
+    @Test
+    public void checkMultipleNotches() {
+        setRotor("VI", NAVALA, "ZM");
+        for (int i = 0; i < UPPER.size(); i += 1) {
+            boolean notch = UPPER_STRING.charAt(i) == 'M'
+                || UPPER_STRING.charAt(i) == 'Z';
+            assertEquals(msg("Rotor VI", "notch at %d", i), notch,
+                         rotor.atNotch());
+            assertEquals(notch, rotor.notchAt(i + UPPER.size()));
+            rotor.advance();
+        }
+    }
+
     /** The number used for the setting. */
     private int _magic;
 
@@ -0,0 +1,84 @@
+package enigma;
+
+/** Scores texts by how closely their n-grams follow those of a sample
+ *  of the plaintext language: the score is the sum over the text's
+ *  n-grams of their log probabilities in the sample (with add-one
+ *  smoothing).  Texts are given as arrays of alphabet indices, and
+ *  scoring allocates nothing.
+ *  @author YunjieZhang
+ */
+class NgramScorer {
+
+    /** A scorer for N-grams of ALPHA, with probabilities estimated from
+     *  the letters of SAMPLE that are in ALPHA (others are skipped). */
+    NgramScorer(Alphabet alpha, int n, String sample) {
+        _size = alpha.size();
+        _n = n;
+        int cells = 1;
+        for (int i = 0; i < n; i += 1) {
+            cells *= _size;
+        }
+        _span = cells / _size;
+        int[] counts = new int[cells];
+        int index = 0, letters = 0;
+        long total = 0;
+        for (int i = 0; i < sample.length(); i += 1) {
+            char c = Character.toUpperCase(sample.charAt(i));
+            if (!alpha.contains(c)) {
+                continue;
+            }
+            index = (index % _span) * _size + alpha.toInt(c);
+            letters += 1;
+            if (letters >= n) {
+                counts[index] += 1;
+                total += 1;
+            }
+        }
+        _logProb = new float[cells];
+        for (int i = 0; i < cells; i += 1) {
+            _logProb[i] =
+                (float) Math.log((counts[i] + 1.0) / (total + cells));
+        }
+    }
+
+    /** Return the n-gram score of the first LEN indices of TEXT. */
+    double score(int[] text, int len) {
+        double result = 0;
+        int index = 0;
+        for (int i = 0; i < len; i += 1) {
+            index = (index % _span) * _size + text[i];
+            if (i >= _n - 1) {
+                result += _logProb[index];
+            }
+        }
+        return result;
+    }
+
+    /** Return the index of coincidence of the first LEN indices of TEXT,
+     *  an alphabet of SIZE letters, using COUNTS (of length at least
+     *  SIZE) as working storage. */
+    static double indexOfCoincidence(int[] text, int len, int size,
+                                     int[] counts) {
+        for (int c = 0; c < size; c += 1) {
+            counts[c] = 0;
+        }
+        for (int i = 0; i < len; i += 1) {
+            counts[text[i]] += 1;
+        }
+        long sum = 0;
+        for (int c = 0; c < size; c += 1) {
+            sum += (long) counts[c] * (counts[c] - 1);
+        }
+        return len < 2 ? 0 : (double) sum / ((long) len * (len - 1));
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+    /** Length of the n-grams. */
+    private final int _n;
+    /** Number of (n-1)-grams. */
+    private final int _span;
+    /** Log probability of each n-gram, indexed by its letters read as a
+     *  number in base _size. */
+    private final float[] _logProb;
+}
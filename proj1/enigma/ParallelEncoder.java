@@ -0,0 +1,84 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Converts long messages by splitting them into chunks that are
+ *  converted in parallel, each by a copy of the machine that has been
+ *  sought to the chunk's starting position.  The result is identical to
+ *  converting the whole message in sequence.
+ *  @author YunjieZhang
+ */
+class ParallelEncoder {
+
+    /** Messages no longer than this are converted sequentially. */
+    static final int MIN_CHUNK = 1 << 14;
+
+    /** An encoder running its tasks in POOL. */
+    ParallelEncoder(ForkJoinPool pool) {
+        _pool = pool;
+    }
+
+    /** An encoder running its tasks in the common pool. */
+    ParallelEncoder() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /** Replace the LEN characters of MSG starting at OFF with their
+     *  conversions by M, leaving M in the state it would have after
+     *  converting them in sequence.  The starting state of each chunk is
+     *  found by seeking, which is much cheaper than converting, so that
+     *  only the conversions themselves are done in parallel. */
+    void convert(Machine M, char[] msg, int off, int len) {
+        if (len <= MIN_CHUNK) {
+            M.convert(msg, off, len);
+            return;
+        }
+        ArrayList<Chunk> chunks = new ArrayList<>();
+        Machine cursor = M.copy();
+        for (int start = off; start < off + len; start += MIN_CHUNK) {
+            int end = Math.min(start + MIN_CHUNK, off + len);
+            chunks.add(new Chunk(cursor.copy(), msg, start, end));
+            cursor.seek(end - start);
+        }
+        for (Chunk chunk : chunks) {
+            _pool.execute(chunk);
+        }
+        for (Chunk chunk : chunks) {
+            chunk.join();
+        }
+        M.restore(cursor.snapshot());
+    }
+
+    /** The task of converting part of a message. */
+    private static class Chunk extends RecursiveAction {
+
+        /** Converts MSG[START .. END-1] with M, which is positioned to
+         *  convert MSG[START]. */
+        Chunk(Machine M, char[] msg, int start, int end) {
+            _machine = M;
+            _msg = msg;
+            _start = start;
+            _end = end;
+        }
+
+        @Override
+        protected void compute() {
+            _machine.convert(_msg, _start, _end - _start);
+        }
+
+        /** Machine used for my part of _msg. */
+        private final Machine _machine;
+        /** Message being converted. */
+        private final char[] _msg;
+        /** Start of my part of _msg. */
+        private final int _start;
+        /** End of my part of _msg. */
+        private final int _end;
+    }
+
+    /** Pool in which chunks are converted. */
+    private final ForkJoinPool _pool;
+
+}
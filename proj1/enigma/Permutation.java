@@ -3,6 +3,7 @@ package enigma;
 import static enigma.EnigmaException.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
  *  to the characters of an alphabet.
@@ -16,25 +17,102 @@ class Permutation {
      *  included in any cycle map to themselves. Whitespace is ignored. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        _cycles = cycles;
+        _cycles = new StringBuilder(cycles);
         _pairs = new ArrayList<String>();
-        String[] stringStore = cycles.split("\\W");
+        int start = 0;
+        for (int i = 0; i <= cycles.length(); i += 1) {
+            if (i == cycles.length() || cycles.charAt(i) == '('
+                || cycles.charAt(i) == ')'
+                || Character.isWhitespace(cycles.charAt(i))) {
+                if (i > start) {
+                    _pairs.add(cycles.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        compile();
+    }
 
-        for (int i = 0; i < stringStore.length; i += 1) {
-            String temp = stringStore[i];
-            if (temp.length() > 0) {
-                _pairs.add(stringStore[i]);
+    /** Set this Permutation to the one taking each index K of ALPHABET to
+     *  FORWARD[K], which must be a permutation of 0 .. ALPHABET.size()-1.
+     *  FORWARD becomes mine and must not be modified. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = new int[forward.length];
+        Arrays.fill(_inverse, -1);
+        if (forward.length != size()) {
+            throw error("permutation table has wrong size");
+        }
+        for (int i = 0; i < forward.length; i += 1) {
+            if (forward[i] < 0 || forward[i] >= forward.length
+                || _inverse[forward[i]] >= 0) {
+                throw error("permutation table is not a permutation");
             }
+            _inverse[forward[i]] = i;
         }
+        _pairs = new ArrayList<String>();
+        StringBuilder cycles = new StringBuilder();
+        boolean[] seen = new boolean[forward.length];
+        for (int i = 0; i < forward.length; i += 1) {
+            if (seen[i] || forward[i] == i) {
+                continue;
+            }
+            StringBuilder cycle = new StringBuilder();
+            for (int j = i; !seen[j]; j = forward[j]) {
+                seen[j] = true;
+                cycle.appendCodePoint(alphabet.toCodePoint(j));
+            }
+            _pairs.add(cycle.toString());
+            cycles.append('(').append(cycle).append(')');
+        }
+        _cycles = cycles;
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      *  c0c1...cm. */
     void addCycle(String cycle) {
-        _cycles += "(";
-        _cycles += cycle;
-        _cycles += ")";
+        _cycles.append('(').append(cycle).append(')');
         _pairs.add(cycle);
+        compileCycle(cycle);
+    }
+
+    /** Rebuild my forward and inverse tables from the current cycles,
+     *  starting from the identity. */
+    private void compile() {
+        int n = size();
+        _forward = new int[n];
+        _inverse = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            _forward[i] = i;
+            _inverse[i] = i;
+        }
+        for (int i = 0; i < _pairs.size(); i += 1) {
+            compileCycle(_pairs.get(i));
+        }
+    }
+
+    /** Record the mapping of the single cycle CYCLE in my tables. */
+    private void compileCycle(String cycle) {
+        int[] chars = cycle.codePoints().toArray();
+        int len = chars.length;
+        for (int j = 0; j < len; j += 1) {
+            int from = indexOf(chars[j]);
+            int to = indexOf(chars[(j + 1) % len]);
+            _forward[from] = to;
+            _inverse[to] = from;
+        }
+    }
+
+    /** Return the index of code point CP in my alphabet, which must
+     *  contain it. */
+    private int indexOf(int cp) {
+        int result = _alphabet.toIndex(cp);
+        if (result < 0) {
+            throw error("character %s not in alphabet",
+                        new String(Character.toChars(cp)));
+        }
+        return result;
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -54,49 +132,43 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char index = _alphabet.toChar(wrap(p));
-        char value = permute(index);
-        return wrap(_alphabet.toInt(value));
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        char index = _alphabet.toChar(c);
-        char value = invert(index);
-        return _alphabet.toInt(value);
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        int index;
-        for (int i = 0; i < _pairs.size(); i += 1) {
-            String temp = _pairs.get(i);
-            for (int j = 0; j < temp.length(); j += 1) {
-                if (temp.charAt(j) == p) {
-                    return temp.charAt((j + 1) % temp.length());
-                }
-            }
+        if (!_alphabet.contains(p)) {
+            return p;
         }
-        return p;
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        for (int i = 0; i < _pairs.size(); i += 1) {
-            String temp = _pairs.get(i);
-            for (int j = 0; j < temp.length(); j += 1) {
-                if (temp.charAt(j) == c) {
-                    if (j == 0) {
-                        return temp.charAt(temp.length() - 1);
-                    } else {
-                        return temp.charAt(j - 1);
-                    }
-                }
-            }
+        if (!_alphabet.contains(c)) {
+            return c;
         }
-        return c;
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
+    }
+
+    /** Return the table giving the result of applying this permutation
+     *  to each index.  The table is mine and must not be modified. */
+    int[] forwardTable() {
+        return _forward;
+    }
+
+    /** Return the table giving the result of applying the inverse of this
+     *  permutation to each index.  The table is mine and must not be
+     *  modified. */
+    int[] inverseTable() {
+        return _inverse;
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -122,11 +194,16 @@ class Permutation {
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
-    /** Cycles of permutation.*/
-    private String _cycles;
+    /** Cycles of permutation, in cycle notation.  Appended to by addCycle,
+     *  once per cycle, so that building a permutation cycle by cycle
+     *  takes time linear in its size. */
+    private StringBuilder _cycles;
     /** Pairs paring up each pair in the cycle. */
     private ArrayList<String> _pairs;
-
+    /** Image of each index under this permutation. */
+    private int[] _forward;
+    /** Preimage of each index under this permutation. */
+    private int[] _inverse;
 
 }
 
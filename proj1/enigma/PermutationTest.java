@@ -66,4 +66,18 @@ public class PermutationTest {
         assertEquals(0, perm.invert(4));
         assertEquals('S', perm.invert('S'));
     }
+
+    /** Test that added cycles are reflected in both directions. */
+    @Test
+    public void testAddCycle() {
+        perm = new Permutation("(AB)", UPPER);
+        perm.addCycle("CDE");
+        assertEquals(1, perm.permute(0));
+        assertEquals(3, perm.permute(2));
+        assertEquals(2, perm.permute(4));
+        assertEquals(4, perm.invert(2));
+        assertEquals(5, perm.permute(5));
+        assertEquals(1, perm.permute(26));
+    }
+
 }
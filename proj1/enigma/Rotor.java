@@ -1,22 +1,17 @@
 package enigma;
 
-
-import java.util.ArrayList;
-
 import static enigma.EnigmaException.*;
 
 /** Superclass that represents a rotor in the enigma machine.
  *  @author YunjieZhang
  */
-class Rotor {
+class Rotor implements Cloneable {
 
     /** A rotor named NAME whose permutation is given by PERM. */
     Rotor(String name, Permutation perm) {
         _name = name.toUpperCase();
         _permutation = perm;
         _set = 0;
-        _cyclesPerm = perm.getPairs();
-        _checkAdvance = false;
     }
 
     /** Return my name. */
@@ -56,19 +51,6 @@ class Rotor {
 
     /** Set setting() to POSN.  */
     void set(int posn) {
-        int change = posn - _set;
-
-        for (int i = 0; i < _cyclesPerm.size(); i += 1) {
-            String temp = _cyclesPerm.get(i);
-            String newChars = "";
-            for (int j = 0; j < temp.length(); j += 1) {
-                int origin = _permutation.alphabet().toInt(temp.charAt(j));
-                int current = _permutation.wrap(origin - change);
-                char currentChar = _permutation.alphabet().toChar(current);
-                newChars += currentChar;
-            }
-            _cyclesPerm.set(i, newChars);
-        }
         _set = _permutation.wrap(posn);
     }
 
@@ -80,18 +62,24 @@ class Rotor {
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        return _permutation.permute(p);
+        return _permutation.wrap(_permutation.permute(p + _set) - _set);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        return _permutation.invert(e);
+        return _permutation.wrap(_permutation.invert(e + _set) - _set);
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return notchAt(_set);
+    }
+
+    /** Return true iff I have a notch at setting POSN, taken modulo
+     *  size(). By default, I have no notches. */
+    boolean notchAt(int posn) {
         return false;
     }
 
@@ -99,14 +87,15 @@ class Rotor {
     void advance() {
     }
 
-    /** @param x set whether it should advance. */
-    void setCheck(boolean x) {
-        _checkAdvance = x;
-    }
-
-    /** Return whether it should rotate. */
-    boolean getCheck() {
-        return _checkAdvance;
+    /** Return a copy of me in my current setting.  The copy shares my
+     *  (unchanging) permutation, but may be set and advanced
+     *  independently. */
+    Rotor copy() {
+        try {
+            return (Rotor) clone();
+        } catch (CloneNotSupportedException excp) {
+            throw new AssertionError(excp);
+        }
     }
 
     /** Convert. */
@@ -123,9 +112,4 @@ class Rotor {
 
     /** The setting of rotor. */
     protected int _set;
-
-    /** The cycle of the permutation. */
-    private ArrayList<String> _cyclesPerm;
-    /** To check if it should advance. */
-    private boolean _checkAdvance;
 }
@@ -1,5 +1,6 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /** Utility definitions for use in unit tests.
@@ -126,4 +127,36 @@ class TestUtils {
         NAVALZ_MAP.put("Gamma", "EGTPLBOVFSINCUJZDXMRQAYWHK");
     }
 
+    /** Notches of the naval rotors. */
+    static final HashMap<String, String> NAVAL_NOTCHES = new HashMap<>();
+    static {
+        NAVAL_NOTCHES.put("I", "Q");
+        NAVAL_NOTCHES.put("II", "E");
+        NAVAL_NOTCHES.put("III", "V");
+        NAVAL_NOTCHES.put("IV", "J");
+        NAVAL_NOTCHES.put("V", "Z");
+        NAVAL_NOTCHES.put("VI", "ZM");
+        NAVAL_NOTCHES.put("VII", "ZM");
+        NAVAL_NOTCHES.put("VIII", "ZM");
+    }
+
+    /** Return a machine with NUMROTORS slots and PAWLS pawls whose
+     *  available rotors are the naval rotors in NAVALA, with no rotors
+     *  inserted. */
+    static Machine navalMachine(int numRotors, int pawls) {
+        ArrayList<Rotor> all = new ArrayList<>();
+        for (String name : NAVALA.keySet()) {
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            if (NAVAL_NOTCHES.containsKey(name)) {
+                all.add(new MovingRotor(name, perm,
+                                        NAVAL_NOTCHES.get(name)));
+            } else if (name.equals("B") || name.equals("C")) {
+                all.add(new Reflector(name, perm));
+            } else {
+                all.add(new FixedRotor(name, perm));
+            }
+        }
+        return new Machine(UPPER, numRotors, pawls, all);
+    }
+
 }
@@ -10,7 +10,11 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        textui.runClasses(PermutationTest.class, MovingRotorTest.class);
+        textui.runClasses(AlphabetTest.class, PermutationTest.class,
+                          MovingRotorTest.class, MachineTest.class,
+                          EnigmaServiceTest.class, BombeTest.class,
+                          CiphertextAttackTest.class, ConfigParserTest.class,
+                          MainTest.class, MessagePipelineTest.class);
     }
 
 }
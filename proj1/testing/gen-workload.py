@@ -0,0 +1,156 @@
+# Generates large, reproducible enigma inputs for load testing.
+#
+# Usage: python3 gen-workload.py [ --seed=N ] [ --size=BYTES ]
+#                                [ --message-lines=N ] [ --config=FILE ]
+#                                [ --prefix=P ]
+#
+# Writes P.inp (default P is "workload/messages"), containing about BYTES
+# (default 4M; a K or M suffix may be used) of random text in messages of
+# N lines each (default 2000), each message under a random setting line
+# for the machine described by FILE (default correct/default.conf).  Also
+# writes P.conf, a copy of FILE, and P.out, the expected output computed
+# from a model of the machine, so that test-correct can check the result.
+# The same seed always produces the same files.
+
+import os, re, sys
+from getopt import getopt, GetoptError
+from random import Random
+
+def read_config(name):
+    """Return the alphabet, number of rotors, number of pawls and a
+    dictionary of rotors (name -> (type, notches, cycles)) from the
+    configuration file NAME."""
+    with open(name) as inp:
+        words = inp.read().split()
+    alphabet, slots, pawls = words[0], int(words[1]), int(words[2])
+    rotors = {}
+    k = 3
+    while k < len(words):
+        rotor, kind = words[k].upper(), words[k + 1]
+        k += 2
+        cycles = []
+        while k < len(words) and words[k].startswith("("):
+            cycles += re.findall(r"\(([^)]*)\)", words[k])
+            k += 1
+        rotors[rotor] = (kind[0], kind[1:], cycles)
+    return alphabet, slots, pawls, rotors
+
+def permutation(alphabet, cycles):
+    """Return the permutation of range(len(ALPHABET)) given by CYCLES."""
+    result = list(range(len(alphabet)))
+    for cycle in cycles:
+        for i, c in enumerate(cycle):
+            result[alphabet.index(c)] = \
+                alphabet.index(cycle[(i + 1) % len(cycle)])
+    return result
+
+class machine:
+    def __init__(self, alphabet, rotors, names, setting, plugs):
+        n = len(alphabet)
+        self.n = n
+        self.forward, self.backward, self.notches = [], [], []
+        for name in names:
+            kind, notches, cycles = rotors[name]
+            perm = permutation(alphabet, cycles)
+            inverse = [0] * n
+            for i, p in enumerate(perm):
+                inverse[p] = i
+            self.forward.append(perm)
+            self.backward.append(inverse)
+            self.notches.append({alphabet.index(c) for c in notches}
+                                if kind == 'M' else set())
+        self.moving = [rotors[name][0] == 'M' for name in names]
+        self.posn = [0] + [alphabet.index(c) for c in setting]
+        self.plugs = permutation(alphabet, plugs)
+
+    def convert(self, c):
+        posn, n, last = self.posn, self.n, len(self.posn) - 1
+        advance = [False] * len(posn)
+        advance[last] = True
+        for i in range(1, last):
+            if self.moving[i] and self.moving[i + 1] \
+               and posn[i + 1] in self.notches[i + 1]:
+                advance[i] = advance[i + 1] = True
+        for i, a in enumerate(advance):
+            if a:
+                posn[i] = (posn[i] + 1) % n
+        c = self.plugs[c]
+        for i in range(last, -1, -1):
+            c = (self.forward[i][(c + posn[i]) % n] - posn[i]) % n
+        for i in range(1, last + 1):
+            c = (self.backward[i][(c + posn[i]) % n] - posn[i]) % n
+        return self.plugs[c]
+
+def setting_line(rand, alphabet, slots, pawls, rotors):
+    """Return a random setting line and the rotor names, setting and
+    plugboard cycles it specifies."""
+    kinds = {k: sorted(r for r in rotors if rotors[r][0] == k)
+             for k in "RNM"}
+    names = ([rand.choice(kinds['R'])]
+             + rand.sample(kinds['N'], slots - pawls - 1)
+             + rand.sample(kinds['M'], pawls))
+    setting = "".join(rand.choice(alphabet) for i in range(slots - 1))
+    letters = rand.sample(alphabet, 2 * rand.randrange(11))
+    plugs = [letters[i] + letters[i + 1] for i in range(0, len(letters), 2)]
+    line = " ".join(["*"] + names + [setting]
+                    + ["(" + p + ")" for p in plugs])
+    return line, names, setting, plugs
+
+def message_line(rand, alphabet):
+    """Return a random line of text of up to about 70 characters."""
+    words = []
+    length = rand.randrange(71)
+    while length > 0:
+        word = "".join(rand.choice(alphabet)
+                       for i in range(min(length, rand.randrange(1, 11))))
+        words.append(word)
+        length -= len(word) + 1
+    return " ".join(words)
+
+def size(text):
+    scale = {'K': 1 << 10, 'M': 1 << 20}.get(text[-1:].upper(), 1)
+    return int(text.rstrip('kKmM')) * scale
+
+try:
+    opts, args = getopt(sys.argv[1:], '',
+                        ['seed=', 'size=', 'message-lines=', 'config=',
+                         'prefix='])
+    opts = dict(opts)
+    seed = int(opts.get('--seed', 61))
+    total = size(opts.get('--size', '4M'))
+    message_lines = int(opts.get('--message-lines', 2000))
+    config = opts.get('--config', os.path.join(os.path.dirname(sys.argv[0]),
+                                               'correct', 'default.conf'))
+    prefix = opts.get('--prefix', 'workload/messages')
+    if args:
+        raise GetoptError("unexpected arguments")
+except (GetoptError, ValueError):
+    print("Usage: python3 gen-workload.py [ --seed=N ] [ --size=BYTES ] "
+          "[ --message-lines=N ] [ --config=FILE ] [ --prefix=P ]",
+          file=sys.stderr)
+    sys.exit(1)
+
+alphabet, slots, pawls, rotors = read_config(config)
+rand = Random(seed)
+if os.path.dirname(prefix):
+    os.makedirs(os.path.dirname(prefix), exist_ok=True)
+with open(config) as inp, open(prefix + ".conf", "w") as out:
+    out.write(inp.read())
+with open(prefix + ".inp", "w") as inp, open(prefix + ".out", "w") as out:
+    written = 0
+    while written < total:
+        line, names, setting, plugs = \
+            setting_line(rand, alphabet, slots, pawls, rotors)
+        M = machine(alphabet, rotors, names, setting, plugs)
+        inp.write(line + "\n")
+        written += len(line) + 1
+        for i in range(message_lines):
+            if written >= total:
+                break
+            text = message_line(rand, alphabet)
+            inp.write(text + "\n")
+            written += len(text) + 1
+            code = "".join(alphabet[M.convert(alphabet.index(c))]
+                           for c in text if c != " ")
+            out.write(" ".join(code[k:k + 5]
+                               for k in range(0, len(code), 5)) + "\n")
@@ -5,8 +5,9 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static ataxx.PieceColor.RED;
-import static ataxx.PieceColor.BLUE;
-import static ataxx.PieceColor.EMPTY;
+import static ataxx.TranspositionTable.EXACT;
+import static ataxx.TranspositionTable.LOWER;
+import static ataxx.TranspositionTable.UPPER;
 import static java.lang.Math.min;
 import static java.lang.Math.max;
 
@@ -22,6 +23,9 @@ class AI extends Player {
     private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
     /** A magnitude greater than a normal value. */
     private static final int INFTY = Integer.MAX_VALUE;
+    /** Log base 2 of the number of entries in the transposition
+     *  table. */
+    private static final int TABLE_LOG_SIZE = 18;
 
     /** A new AI for GAME that will play MYCOLOR. */
     AI(Game game, PieceColor myColor) {
@@ -53,11 +57,23 @@ class AI extends Player {
     /** Used to communicate best moves found by findMove, when asked for. */
     private Move _lastFoundMove;
 
+    /** Return the table of positions I have searched, which I keep from
+     *  move to move. */
+    TranspositionTable table() {
+        return _table;
+    }
+
     /** Find a move from position BOARD and return its value, recording
      *  the move found in _lastFoundMove iff SAVEMOVE. The move
      *  should have maximal value or have value >= BETA if SENSE==1,
      *  and minimal value or value <= ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels before using a static estimate. */
+     *  DEPTH levels before using a static estimate.  Uses the result of
+     *  an earlier search of BOARD to at least DEPTH levels, if one is in
+     *  the transposition table and is good enough, and otherwise searches
+     *  the best move found by any earlier search of BOARD first.  When
+     *  SAVEMOVE, the window is narrowed only to just below the best value
+     *  so far, so that the moves found to have that value are exactly
+     *  those tied for best, from which the move is chosen at random. */
     private int findMove(Board board, int depth, boolean saveMove, int sense,
                          int alpha, int beta) {
         HashMap<Move, Integer> moveResults = new HashMap<Move, Integer>();
@@ -77,16 +93,35 @@ class AI extends Player {
                 return score;
             }
         }
+        long key = board.key();
+        long entry = _table.probe(key);
+        if (entry != 0 && !saveMove
+            && TranspositionTable.depth(entry) >= depth) {
+            int score = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == EXACT || (bound == LOWER && score >= beta)
+                || (bound == UPPER && score <= alpha)) {
+                return score;
+            }
+        }
+        int alpha0 = alpha, beta0 = beta;
+        ArrayList<Move> possibles = allPossibleMoves(board);
+        if (entry != 0) {
+            bestFirst(possibles, TranspositionTable.move(entry));
+        }
+        Move best = null;
         if (sense == 1) {
             v = Integer.MIN_VALUE + 1;
-            ArrayList<Move> possibles = allPossibleMoves(board);
             for (Move move:possibles) {
                 moveResults.put(move, 0);
                 board.makeMove(move);
                 int bScore = findMove(board, depth - 1, false, -1, alpha, beta);
                 moveResults.replace(move, bScore);
+                if (best == null || bScore > v) {
+                    best = move;
+                }
                 v = max(v, bScore);
-                alpha = max(alpha, v);
+                alpha = max(alpha, saveMove ? v - 1 : v);
                 board.undo();
                 if (beta <= alpha) {
                     break;
@@ -94,25 +129,31 @@ class AI extends Player {
             }
         } else {
             v = Integer.MAX_VALUE - 1;
-            ArrayList<Move> possibles = allPossibleMoves(board);
             for (Move move:possibles) {
                 moveResults.put(move, 0);
                 board.makeMove(move);
                 int bScore = findMove(board, depth - 1, false, 1, alpha, beta);
                 moveResults.replace(move, bScore);
+                if (best == null || bScore < v) {
+                    best = move;
+                }
                 v = min(v, bScore);
-                beta = min(beta, v);
+                beta = min(beta, saveMove ? v + 1 : v);
                 board.undo();
                 if (beta <= alpha) {
                     break;
                 }
             }
         }
+        _table.store(key, depth,
+                     v <= alpha0 ? UPPER : v >= beta0 ? LOWER : EXACT, v,
+                     best.isPass() ? -1 : Board.moveIndex(best));
         ArrayList<Move> eqMoves = new ArrayList<Move>();
         if (saveMove) {
-            for (Map.Entry<Move, Integer> elem:moveResults.entrySet()) {
-                if (elem.getValue() == v) {
-                    eqMoves.add(elem.getKey());
+            for (Move move : possibles) {
+                Integer result = moveResults.get(move);
+                if (result != null && result == v) {
+                    eqMoves.add(move);
                 }
             }
             _lastFoundMove = eqMoves.get(game().nextRandom(eqMoves.size()));
@@ -120,6 +161,20 @@ class AI extends Player {
         return v;
     }
 
+    /** Move the move with moveIndex INDEX to the front of MOVES, if it is
+     *  there. */
+    private static void bestFirst(ArrayList<Move> moves, int index) {
+        if (index < 0) {
+            return;
+        }
+        Move best = Board.move(index);
+        int k = moves.indexOf(best);
+        if (k > 0) {
+            moves.set(k, moves.get(0));
+            moves.set(0, best);
+        }
+    }
+
     /** Return the best score of the bottom choice.
      * @param possibles all possible moves.
      * @param board the board
@@ -141,45 +196,15 @@ class AI extends Player {
         return score;
     }
 
-    /** Return the arrayList of all possible moves of a color.
+    /** Return the arrayList of all possible moves of a color, which is
+     *  just a pass if there are no others.
      * @param  board is the board that we play on. */
     ArrayList<Move> allPossibleMoves(Board board) {
-        ArrayList<Move> possibleRed = new ArrayList<Move>();
-        ArrayList<Move> possibleBlue = new ArrayList<Move>();
-        PieceColor color = board.whoseMove();
-        for (char c = 'a'; c <= 'g'; c += 1) {
-            for (char r = '1'; r <= '7'; r += 1) {
-                PieceColor cur = board.get(c, r);
-                Move move;
-                if (cur.equals(color)) {
-                    for (int col = -2; col <= 2; col += 1) {
-                        for (int row = -2; row <= 2; row += 1) {
-                            if (col == 0 && row == 0) {
-                                continue;
-                            }
-                            char col1 = (char) (c + col);
-                            char row1 = (char) (r + row);
-                            if (board.get(col1, row1).equals(EMPTY)) {
-                                move = Move.move(c, r, col1, row1);
-                                if (board.legalMove(move)) {
-                                    if (color.equals(RED)) {
-                                        possibleRed.add(move);
-                                    }
-                                    if (color.equals(BLUE)) {
-                                        possibleBlue.add(move);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        if (color.equals(RED)) {
-            return possibleRed;
-        } else {
-            return possibleBlue;
+        ArrayList<Move> result = board.legalMoves();
+        if (result.isEmpty()) {
+            result.add(Move.PASS);
         }
+        return result;
     }
 
     /** Return a heuristic value for BOARD. */
@@ -207,6 +232,9 @@ class AI extends Player {
     }
     /** The variable to show whether the player is an AI or a man. */
     private String _type;
+    /** Results of searches of positions, by Zobrist key. */
+    private final TranspositionTable _table =
+        new TranspositionTable(TABLE_LOG_SIZE);
     /** The maximum score to get from a game. */
     static final int MAX_SCORE = 49;
     /** The minimum score to get from a game. */
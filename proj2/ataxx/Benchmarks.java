@@ -0,0 +1,128 @@
+package ataxx;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import bench.Harness;
+
+/** Micro-benchmarks of the board and the AI, run and reported by a
+ *  bench.Harness.  The size parameter of each benchmark is the number of
+ *  (seeded, random) moves, including passes, played before it starts.
+ *  @author YunjieZhang
+ */
+public final class Benchmarks {
+
+    /** Run the benchmarks named in ARGS, or all of them if none are
+     *  named.  ARGS may start with --json FILE, in which case the results
+     *  are also written to FILE. */
+    public static void main(String... args) {
+        Benchmarks bench = new Benchmarks();
+        for (String name : bench._harness.names(args, NAMES)) {
+            switch (name) {
+            case "move":
+                bench.makeMove();
+                break;
+            case "ai":
+                bench.findMove();
+                break;
+            default:
+                bench._harness.unknown(name);
+            }
+        }
+        bench._harness.finish();
+    }
+
+    /** Names of all benchmarks. */
+    private static final String[] NAMES = { "move", "ai" };
+
+    /** Time making and undoing each legal move other than a pass in
+     *  positions reached after several numbers of moves.  A position in
+     *  which the only move is a pass is skipped. */
+    private void makeMove() {
+        for (int size : PLIES) {
+            Board board = position(size);
+            List<Move> moves = board.legalMoves();
+            if (moves.isEmpty()) {
+                continue;
+            }
+            int rounds = ROUNDS / moves.size() + 1;
+            long ops = (long) rounds * moves.size();
+            _harness.measure("Board.makeMove+undo", size, ops, () -> {
+                int sum = 0;
+                for (int r = 0; r < rounds; r += 1) {
+                    for (Move move : moves) {
+                        board.makeMove(move);
+                        sum += board.redPieces();
+                        board.undo();
+                    }
+                }
+                return sum;
+            });
+        }
+    }
+
+    /** Time the AI's choice of move in positions reached after several
+     *  numbers of moves.  Each run uses a new AI, so that its
+     *  transposition table starts empty, and the table's hit rate in the
+     *  last run is reported. */
+    private void findMove() {
+        for (int size : AI_PLIES) {
+            Board board = position(size);
+            if (board.gameOver()) {
+                continue;
+            }
+            Game game = new Game(board, NO_COMMANDS, new TextReporter());
+            AI[] ai = new AI[1];
+            Harness.Body body = () -> {
+                ai[0] = new AI(game, board.whoseMove());
+                return ai[0].myMove().hashCode();
+            };
+            _harness.measure("AI.findMove", size, 1, "op", 1, AI_REPEATS,
+                             body);
+            _harness.note("AI.findMove table", size,
+                          100 * ai[0].table().hitRate(), "% hits");
+        }
+    }
+
+    /** Return the position reached from the initial one by PLIES random
+     *  moves (fewer, if the game ends first). */
+    private Board position(int plies) {
+        Board board = new Board();
+        Random random = new Random(plies);
+        for (int i = 0; i < plies && !board.gameOver(); i += 1) {
+            List<Move> moves = _ai.allPossibleMoves(board);
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        return board;
+    }
+
+    /** An exhausted source of commands. */
+    private static final CommandSource NO_COMMANDS =
+        new ReaderSource(new StringReader(""), false);
+
+    /** Numbers of moves played to reach the benchmarked positions. */
+    private static final int[] PLIES = { 0, 10, 20 };
+
+    /** Numbers of moves played to reach the positions in which the AI
+     *  is timed.  Its search takes seconds in the middle game. */
+    private static final int[] AI_PLIES = { 0, 2, 4 };
+    /** Number of timed runs of the AI benchmark. */
+    private static final int AI_REPEATS = 2;
+
+    /** Approximate number of operations in each run of a cheap
+     *  benchmark. */
+    private static final int ROUNDS = 1 << 16;
+    /** Number of untimed runs of each benchmark. */
+    private static final int WARMUP = 3;
+    /** Number of timed runs of each benchmark. */
+    private static final int REPEATS = 5;
+
+    /** Used only to list legal moves. */
+    private final AI _ai =
+        new AI(new Game(new Board(), NO_COMMANDS, new TextReporter()),
+               PieceColor.RED);
+    /** Runs and reports the benchmarks. */
+    private final Harness _harness = new Harness("ataxx", WARMUP, REPEATS);
+
+}
@@ -8,11 +8,11 @@ import static ataxx.PieceColor.RED;
 import static ataxx.PieceColor.EMPTY;
 import static ataxx.PieceColor.BLOCKED;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Formatter;
 import java.util.Observable;
-import java.util.Stack;
-import static java.lang.Math.abs;
-import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 /** Ataxx board. The squarestars are labeled by column (a char value between
  *  'a' - 2 and 'g' + 2) and row (a char value between '1' - 2 and '7'
@@ -47,46 +47,24 @@ class Board extends Observable {
 
     /** A new, cleared board at the start of the game. */
     Board() {
-        _board = new PieceColor[EXTENDED_SIDE * EXTENDED_SIDE];
-        _whoseMove = RED;
-        for (int i = 0; i < _board.length; i += 1) {
-            _board[i] = EMPTY;
-        }
-        _numBlock = 0;
-        initBlock();
-        set('a', '1', BLUE);
-        set('a', '7', RED);
-        set('g', '1', RED);
-        set('g', '7', BLUE);
-        _redNum = 2;
-        _blueNum = 2;
-        _jumps = 0;
-        _allBoards = new Stack<PieceColor[]>();
-        _numBlue = new Stack<Integer>();
-        _numRed = new Stack<Integer>();
-        _allmoves = new Stack<Move>();
-        _allBlocks = new ArrayList<Integer>();
-
-        _allBoards.push(_board.clone());
-        _numRed.push(_redNum);
-        _numBlue.push(_redNum);
+        _allmoves = new Move[UNDO_CAPACITY];
+        _undo = new long[UNDO_CAPACITY];
+        _keys = new long[UNDO_CAPACITY];
+        clear();
     }
 
     /** A copy of B. */
-    @SuppressWarnings("unchecked")
     Board(Board b) {
-        _board = b._board.clone();
+        _red = b._red;
+        _blue = b._blue;
+        _blocked = b._blocked;
         _jumps = b.numJumps();
         _whoseMove = b.whoseMove();
-        _blueNum = b.bluePieces();
-        _redNum = b.redPieces();
-        _numBlock = b.blockPieces();
-        _allBlocks = new ArrayList<Integer>(b.getAllBlocks());
-
-        _allmoves = (Stack<Move>) b.allMoves().clone();
-        _numBlue = (Stack<Integer>) b.getNumBlue().clone();
-        _numRed = (Stack<Integer>) b.getNumRed().clone();
-        _allBoards = (Stack<PieceColor[]>) b.getAllBoards().clone();
+        _allmoves = b._allmoves.clone();
+        _undo = b._undo.clone();
+        _keys = b._keys.clone();
+        _numMoves = b._numMoves;
+        _key = b._key;
     }
 
     /** Return the linearized index of square COL ROW. */
@@ -104,21 +82,15 @@ class Board extends Observable {
      *  positions and no blocks. */
     void clear() {
         _whoseMove = RED;
-        for (int i = 0; i < _board.length; i += 1) {
-            _board[i] = EMPTY;
-        }
-        _numBlock = 0;
-        initBlock();
+        _red = _blue = _blocked = 0;
+        _key = 0;
         set('a', '1', BLUE);
         set('a', '7', RED);
         set('g', '1', RED);
         set('g', '7', BLUE);
-        _redNum = 2;
-        _blueNum = 2;
         _jumps = 0;
-        _allmoves = new Stack<>();
-        setChanged();
-        notifyObservers();
+        _numMoves = 0;
+        announce();
     }
 
     /** Return true iff the game is over: i.e., if neither side has
@@ -131,7 +103,7 @@ class Board extends Observable {
         if (redPieces() == 0 || bluePieces() == 0) {
             return true;
         }
-        if (redPieces() + bluePieces() + _numBlock == SQ_NUMBER) {
+        if (empty() == 0) {
             return true;
         }
         if (!canMove(RED) && !canMove(BLUE)) {
@@ -152,56 +124,74 @@ class Board extends Observable {
 
     /** Return number of blocks on the board. */
     int blockPieces() {
-        return _numBlock;
-    }
-
-    /** Return the arraylist that stores sq of all blocks. */
-    ArrayList<Integer> getAllBlocks() {
-        return _allBlocks;
+        return numPieces(BLOCKED);
     }
 
-
     /** Return number of COLOR pieces on the board. */
     int numPieces(PieceColor color) {
+        return Long.bitCount(pieces(color));
+    }
+
+    /** Return the mask of the squares holding COLOR, which is 0 unless
+     *  COLOR is RED, BLUE, or BLOCKED. */
+    private long pieces(PieceColor color) {
         switch (color) {
         case RED:
-            return _redNum;
+            return _red;
         case BLUE:
-            return _blueNum;
+            return _blue;
         case BLOCKED:
-            return _numBlock;
+            return _blocked;
         default:
             return 0;
         }
     }
 
-    /** Increment numPieces(COLOR) by K. */
-    private void incrPieces(PieceColor color, int k) {
+    /** Set the mask of the squares holding COLOR, which must be RED,
+     *  BLUE, or BLOCKED, to MASK. */
+    private void setPieces(PieceColor color, long mask) {
         switch (color) {
         case RED:
-            _redNum += k;
+            _red = mask;
             break;
         case BLUE:
-            _blueNum += k;
+            _blue = mask;
             break;
         case BLOCKED:
-            _numBlock += k;
+            _blocked = mask;
             break;
         default:
-            break;
+            throw new IllegalArgumentException("not a piece");
         }
     }
 
+    /** Return the mask of the empty squares. */
+    private long empty() {
+        return ~(_red | _blue | _blocked) & ALL;
+    }
+
     /** The current contents of square CR, where 'a'-2 <= C <= 'g'+2, and
      *  '1'-2 <= R <= '7'+2.  Squares outside the range a1-g7 are all
      *  BLOCKED.  Returns the same value as get(index(C, R)). */
     PieceColor get(char c, char r) {
-        return _board[index(c, r)];
+        return get(index(c, r));
     }
 
     /** Return the current contents of square with linearized index SQ. */
     PieceColor get(int sq) {
-        return _board[sq];
+        int b = BITS[sq];
+        if (b < 0) {
+            return BLOCKED;
+        }
+        long square = 1L << b;
+        if ((_red & square) != 0) {
+            return RED;
+        } else if ((_blue & square) != 0) {
+            return BLUE;
+        } else if ((_blocked & square) != 0) {
+            return BLOCKED;
+        }
+        return EMPTY;
     }
 
     /** Set get(C, R) to V, where 'a' <= C <= 'g', and
@@ -210,10 +200,18 @@ class Board extends Observable {
         set(index(c, r), v);
     }
 
-    /** Set square with linearized index SQ to V.  This operation is
-     *  undoable. */
+    /** Set square with linearized index SQ, which is not in the border,
+     *  to V. */
     private void set(int sq, PieceColor v) {
-        _board[sq] = v;
+        int b = BITS[sq];
+        _key ^= ZOBRIST[get(sq).ordinal()][b] ^ ZOBRIST[v.ordinal()][b];
+        long square = 1L << b;
+        _red &= ~square;
+        _blue &= ~square;
+        _blocked &= ~square;
+        if (v != EMPTY) {
+            setPieces(v, pieces(v) | square);
+        }
     }
 
     /** Return true iff MOVE is legal on the current board. */
@@ -227,41 +225,42 @@ class Board extends Observable {
             }
             return true;
         }
-        PieceColor cur = get(move.col0(), move.row0());
-        if (cur.equals(EMPTY) || !cur.equals(_whoseMove)) {
-            return false;
-        }
-        PieceColor destination = get(move.col1(), move.row1());
-        if (destination != EMPTY) {
+        int from = BITS[move.fromIndex()], to = BITS[move.toIndex()];
+        if (from < 0 || to < 0) {
             return false;
         }
-        int rowDif = abs(move.row1() - move.row0());
-        int colDif = abs(move.col1() - move.col0());
-        if (rowDif > 2 || colDif > 2) {
-            return false;
-        }
-        if (rowDif == 0 && colDif == 0) {
-            return false;
-        }
-        return true;
+        return (pieces(_whoseMove) & (1L << from)) != 0
+            && (empty() & (1L << to)) != 0;
     }
 
     /** Return true iff player WHO can move, ignoring whether it is
      *  that player's move and whether the game is over. */
     boolean canMove(PieceColor who) {
-        for (int i = 0; i < _board.length; i += 1) {
-            if (_board[i] == who) {
-                for (int c = -2; c <= 2; c += 1) {
-                    for (int r = -2; r <= 2; r += 1) {
-                        int index = neighbor(i, c, r);
-                        if (_board[index] == EMPTY) {
-                            return true;
-                        }
-                    }
-                }
+        return (spread(spread(pieces(who))) & empty()) != 0;
+    }
+
+    /** Return the squares within one row and column of the squares in
+     *  MASK, including those of MASK. */
+    private static long spread(long mask) {
+        long row = (mask | ((mask << 1) & ~COLUMN_A)
+                    | ((mask >>> 1) & ~COLUMN_G)) & ALL;
+        return (row | (row << SIDE) | (row >>> SIDE)) & ALL;
+    }
+
+    /** Return all legal moves other than pass for the player on move,
+     *  ordered by from square and then to square. */
+    ArrayList<Move> legalMoves() {
+        ArrayList<Move> result = new ArrayList<Move>();
+        long empty = empty();
+        for (long froms = pieces(_whoseMove); froms != 0;
+             froms &= froms - 1) {
+            int from = Long.numberOfTrailingZeros(froms);
+            for (long tos = (NEIGHBORS[from] | JUMPS[from]) & empty;
+                 tos != 0; tos &= tos - 1) {
+                result.add(MOVES[from][Long.numberOfTrailingZeros(tos)]);
             }
         }
-        return false;
+        return result;
     }
 
     /** Return the color of the player who has the next move.  The
@@ -273,7 +272,7 @@ class Board extends Observable {
     /** Return total number of moves and passes since the last
      *  clear or the creation of the board. */
     int numMoves() {
-        return _allmoves.size();
+        return _numMoves;
     }
 
     /** Return number of non-pass moves made in the current game since the
@@ -301,74 +300,109 @@ class Board extends Observable {
             _jumps = 0;
             return;
         }
-        if (move.isExtend()) {
-            PieceColor cur = get(move.col0(), move.row0());
-            set(index(move.col1(), move.row1()), cur);
+        PieceColor opponent = _whoseMove.opposite();
+        int from = BITS[move.fromIndex()], to = BITS[move.toIndex()];
+        long mine = pieces(_whoseMove), theirs = pieces(opponent);
+        long captured = NEIGHBORS[to] & theirs;
+        pushUndo(move, captured);
+        _key ^= ZOBRIST[_whoseMove.ordinal()][to] ^ TURN;
+        if ((NEIGHBORS[from] & (1L << to)) != 0) {
             _jumps = 0;
-            incrPieces(_whoseMove, 1);
-
-
         } else {
-            PieceColor cur = get(move.col0(), move.row0());
-            set(index(move.col0(), move.row0()), EMPTY);
-            set(index(move.col1(), move.row1()), cur);
+            mine &= ~(1L << from);
+            _key ^= ZOBRIST[_whoseMove.ordinal()][from];
             _jumps += 1;
         }
-        int sq = index(move.col1(), move.row1());
-        for (int c = -1; c <= 1; c += 1) {
-            for (int r = -1; r <= 1; r += 1) {
-                int index = neighbor(sq, c, r);
-                if (_board[index].equals(_whoseMove.opposite())) {
-                    set(index, _whoseMove);
-                    incrPieces(_whoseMove, 1);
-                    incrPieces(_whoseMove.opposite(), -1);
-                }
-            }
+        for (long c = captured; c != 0; c &= c - 1) {
+            _key ^= CAPTURE[Long.numberOfTrailingZeros(c)];
         }
-        _allmoves.push(move);
-        _allBoards.push(_board.clone());
-        _numBlue.push(_blueNum);
-        _numRed.push(_blueNum);
-        PieceColor opponent = _whoseMove.opposite();
+        setPieces(_whoseMove, mine | captured | (1L << to));
+        setPieces(opponent, theirs & ~captured);
         _whoseMove = opponent;
-        setChanged();
-        notifyObservers();
+        announce();
     }
 
     /** Update to indicate that the current player passes, assuming it
      *  is legal to do so.  The only effect is to change whoseMove(). */
     void pass() {
         assert !canMove(_whoseMove);
-        _allmoves.push(Move.PASS);
-        _allBoards.push(_board.clone());
-        _numBlue.push(_blueNum);
-        _numRed.push(_redNum);
+        pushUndo(Move.PASS, 0);
+        _key ^= TURN;
         _whoseMove = _whoseMove.opposite();
-        setChanged();
-        notifyObservers();
+        announce();
     }
 
-    /** Undo the last move. */
+    /** Undo the last move.  Blocks are not affected. */
     void undo() {
-        Move lastMove = _allmoves.pop();
-        PieceColor[] lastBoard = _allBoards.pop();
-        PieceColor[] toRecover = _allBoards.peek();
-        if (lastMove == Move.PASS) {
-            _jumps -= 1;
+        _numMoves -= 1;
+        Move lastMove = _allmoves[_numMoves];
+        long record = _undo[_numMoves];
+        _jumps = (int) (record >>> SQ_NUMBER);
+        _key = _keys[_numMoves];
+        _whoseMove = _whoseMove.opposite();
+        if (!lastMove.isPass()) {
+            PieceColor opponent = _whoseMove.opposite();
+            int from = BITS[lastMove.fromIndex()];
+            int to = BITS[lastMove.toIndex()];
+            long captured = record & ALL;
+            long mine = pieces(_whoseMove) & ~(captured | (1L << to));
+            if ((NEIGHBORS[from] & (1L << to)) == 0) {
+                mine |= 1L << from;
+            }
+            setPieces(_whoseMove, mine);
+            setPieces(opponent, pieces(opponent) | captured);
         }
-        for (int i = 0; i < toRecover.length; i += 1) {
-            _board[i] = toRecover[i];
+        announce();
+    }
+
+    /** Record MOVE, about to be made and capturing the pieces in
+     *  CAPTURED, for undo. */
+    private void pushUndo(Move move, long captured) {
+        if (_numMoves == _undo.length) {
+            _allmoves = Arrays.copyOf(_allmoves, 2 * _numMoves);
+            _undo = Arrays.copyOf(_undo, 2 * _numMoves);
+            _keys = Arrays.copyOf(_keys, 2 * _numMoves);
+        }
+        _allmoves[_numMoves] = move;
+        _undo[_numMoves] = captured | ((long) _jumps << SQ_NUMBER);
+        _keys[_numMoves] = _key;
+        _numMoves += 1;
+    }
+
+    /** Return the Zobrist key of the current position: the exclusive or
+     *  of a fixed random number for each piece and block on its square,
+     *  of another if blue is on move, and of one for the number of
+     *  consecutive jumps, on which the end of the game depends.  Equal
+     *  positions have equal keys, and unequal positions almost certainly
+     *  do not.  All but the last part are kept up to date by each change
+     *  to the board. */
+    long key() {
+        return _key ^ JUMP_COUNTS[_jumps];
+    }
+
+    /** Return a number between 0 and MOVE_INDICES - 1 identifying MOVE,
+     *  which is not a pass. */
+    static int moveIndex(Move move) {
+        return BITS[move.fromIndex()] * SQ_NUMBER + BITS[move.toIndex()];
+    }
+
+    /** Return the move identified by moveIndex INDEX. */
+    static Move move(int index) {
+        return MOVES[index / SQ_NUMBER][index % SQ_NUMBER];
+    }
+
+    /** Notify my observers, if any, that I have changed.  Boards used
+     *  only for searching have none, and so do no work here. */
+    private void announce() {
+        if (countObservers() > 0) {
+            setChanged();
+            notifyObservers();
         }
-        _numRed.pop();
-        _numBlue.pop();
-        _whoseMove = _whoseMove.opposite();
-        setChanged();
-        notifyObservers();
     }
 
     /** Return true iff it is legal to place a block at C R. */
     boolean legalBlock(char c, char r) {
-        PieceColor cur = _board[index(c, r)];
+        PieceColor cur = get(c, r);
         return (cur != RED && cur != BLUE);
     }
 
@@ -390,30 +424,11 @@ class Board extends Observable {
         char mirrorCol = (char) mirrorC;
         int mirrorR = '7' - r + '1';
         char mirrorRow = (char) mirrorR;
-        _board[index(c, r)] = BLOCKED;
-        if (!_allBlocks.contains(index(c, r))) {
-            _allBlocks.add(index(c, r));
-            incrPieces(BLOCKED, 1);
-        }
-        _board[index(mirrorCol, r)] = BLOCKED;
-        if (!_allBlocks.contains(index(mirrorCol, r))) {
-            _allBlocks.add(index(mirrorCol, r));
-            incrPieces(BLOCKED, 1);
-        }
-        _board[index(c, mirrorRow)] = BLOCKED;
-        if (!_allBlocks.contains(index(c, mirrorRow))) {
-            _allBlocks.add(index(c, mirrorRow));
-            incrPieces(BLOCKED, 1);
-        }
-        _board[index(mirrorCol, mirrorRow)] = BLOCKED;
-        if (!_allBlocks.contains(index(mirrorCol, mirrorRow))) {
-            _allBlocks.add(index(mirrorCol, mirrorRow));
-            incrPieces(BLOCKED, 1);
-        }
-
-        _allBoards.push(_board.clone());
-        setChanged();
-        notifyObservers();
+        set(c, r, BLOCKED);
+        set(mirrorCol, r, BLOCKED);
+        set(c, mirrorRow, BLOCKED);
+        set(mirrorCol, mirrorRow, BLOCKED);
+        announce();
     }
 
     /** Place a block at CR. */
@@ -421,22 +436,11 @@ class Board extends Observable {
         setBlock(cr.charAt(0), cr.charAt(1));
     }
 
-    /** Initialize the state where the outside 2 layers are blocks. */
-    void initBlock() {
-        for (int i = 0; i < _board.length; i += 1) {
-            _board[i] = BLOCKED;
-        }
-        for (char i = 'a'; i <= 'g'; i += 1) {
-            for (char j = '1'; j <= '7'; j += 1) {
-                _board[index(i, j)] = EMPTY;
-            }
-        }
-    }
-
     /** Return a list of all moves made since the last clear (or start of
      *  game). */
-    Stack<Move> allMoves() {
-        return _allmoves;
+    List<Move> allMoves() {
+        return new ArrayList<Move>(Arrays.asList(_allmoves)
+                                   .subList(0, _numMoves));
     }
 
     @Override
@@ -448,12 +452,13 @@ class Board extends Observable {
     @Override
     public boolean equals(Object obj) {
         Board other = (Board) obj;
-        return Arrays.equals(_board, other._board);
+        return _red == other._red && _blue == other._blue
+            && _blocked == other._blocked;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(_board);
+        return Long.hashCode(_red * 31 + _blue) * 31 + Long.hashCode(_blocked);
     }
 
     /** Return a text depiction of the board (not a dump).  If LEGEND,
@@ -466,7 +471,7 @@ class Board extends Observable {
             }
             for (char c = 'a'; c <= 'g'; c += 1) {
                 out.format(" ");
-                PieceColor temp = _board[index(c, r)];
+                PieceColor temp = get(c, r);
                 if (temp.equals(RED)) {
                     out.format("r");
                 }
@@ -490,69 +495,128 @@ class Board extends Observable {
 
 
 
-    /** Return _numRed. */
-    Stack<Integer> getNumRed() {
-        return _numRed;
-    }
-
-    /** Return _numBlue. */
-    Stack<Integer> getNumBlue() {
-        return _numBlue;
-    }
-
-    /** Get _allBoards.
-     * @return  returns all baords stored. */
-    Stack<PieceColor[]> getAllBoards() {
-        return _allBoards;
-    }
-
     /** Return the last move made. */
     Move getLastMove() {
-        return _allmoves.peek();
+        return _allmoves[_numMoves - 1];
     }
 
     /** Return number of blocks. */
     int getNumBlock() {
-        return _numBlock;
-    }
-
-
-    /** For reasons of efficiency in copying the board,
-     *  we use a 1D array to represent it, using the usual access
-     *  algorithm: row r, column c => index(r, c).
-     *
-     *  Next, instead of using a 7x7 board, we use an 11x11 board in
-     *  which the outer two rows and columns are blocks, and
-     *  row 2, column 2 actually represents row 0, column 0
-     *  of the real board.  As a result of this trick, there is no
-     *  need to special-case being near the edge: we don't move
-     *  off the edge because it looks blocked.
-     *
-     *  Using characters as indices, it follows that if 'a' <= c <= 'g'
-     *  and '1' <= r <= '7', then row c, column r of the board corresponds
-     *  to board[(c -'a' + 2) + 11 (r - '1' + 2) ], or by a little
-     *  re-grouping of terms, board[c + 11 * r + SQUARE_CORRECTION]. */
-    private PieceColor[] _board;
+        return blockPieces();
+    }
+
+
+    /** The board is represented by three masks, of the red pieces, the
+     *  blue pieces, and the blocks, in which bit 7 * (r - '1') + (c - 'a')
+     *  stands for the square at column c and row r.  Bits 49 and up are
+     *  always 0, and the border squares are not represented at all: they
+     *  are blocked whatever the masks say.  Moves, captures, and counts
+     *  are thus a few logical operations on longs, using the masks of the
+     *  neighbors of each square in NEIGHBORS and JUMPS. */
+    private long _red, _blue, _blocked;
 
     /** Player that is on move. */
     private PieceColor _whoseMove;
     /** Number of jumps made by players. */
     private int _jumps;
-    /** Total number of red pieces, blue pieces, blocks and empty squares. */
-    private int _redNum, _blueNum, _numBlock;
-    /** To keep track of all blocks, which should not be undone. */
-    private ArrayList<Integer> _allBlocks;
-    /** The stack to store all moves. */
-    private Stack<Move> _allmoves;
-    /** *The stack to store all number of red pieces. */
-    private Stack<Integer> _numRed;
-    /** The stack to store all number of blue pieces. */
-    private Stack<Integer> _numBlue;
-    /** The stack to store all boards. */
-    private Stack<PieceColor[]> _allBoards;
+    /** The moves made, in order, in _allmoves[0 .. _numMoves-1]. */
+    private Move[] _allmoves;
+    /** The number of moves made. */
+    private int _numMoves;
+    /** What undo needs beyond the move itself, for each move in
+     *  _allmoves: the mask of the pieces it captured, in the low
+     *  SQ_NUMBER bits, and numJumps() before it, in the bits above. */
+    private long[] _undo;
+    /** The key() before each move in _allmoves. */
+    private long[] _keys;
+    /** The key() of the current position. */
+    private long _key;
     /** A board has 49 squares. */
     static final int SQ_NUMBER = 49;
     /** The index of A. */
     static final int INDEX = 97;
 
+    /** Initial number of moves that may be undone without growing
+     *  _undo. */
+    private static final int UNDO_CAPACITY = 128;
+
+    /** Number of distinct values of moveIndex. */
+    static final int MOVE_INDICES = SQ_NUMBER * SQ_NUMBER;
+
+    /** Mask of all squares. */
+    private static final long ALL = (1L << SQ_NUMBER) - 1;
+    /** Mask of the squares in columns a and g. */
+    private static final long COLUMN_A = ALL / ((1L << SIDE) - 1),
+        COLUMN_G = COLUMN_A << (SIDE - 1);
+
+    /** Bits of the squares, by linearized index, or -1 for the border. */
+    private static final int[] BITS = new int[EXTENDED_SIDE * EXTENDED_SIDE];
+    /** Masks of the squares one square away from each square, by bit. */
+    private static final long[] NEIGHBORS = new long[SQ_NUMBER];
+    /** Masks of the squares two squares away from each square, by bit. */
+    private static final long[] JUMPS = new long[SQ_NUMBER];
+    /** The moves from and to each square, by bit, or null. */
+    private static final Move[][] MOVES = new Move[SQ_NUMBER][SQ_NUMBER];
+
+    /** Zobrist numbers of each kind of square, by PieceColor ordinal and
+     *  bit.  Those of empty squares are 0. */
+    private static final long[][] ZOBRIST =
+        new long[PieceColor.values().length][SQ_NUMBER];
+    /** Zobrist number of blue being on move. */
+    private static final long TURN;
+    /** Zobrist numbers of each number of consecutive jumps.  That of no
+     *  jumps is 0. */
+    private static final long[] JUMP_COUNTS = new long[JUMP_LIMIT + 1];
+    /** Change to the key when the piece on each square, by bit, changes
+     *  color. */
+    private static final long[] CAPTURE = new long[SQ_NUMBER];
+    /** Seed of the Zobrist numbers, which are the same on every run. */
+    private static final long ZOBRIST_SEED = 0x5eed_a7a3L;
+
+    static {
+        Random random = new Random(ZOBRIST_SEED);
+        for (PieceColor color : PieceColor.values()) {
+            for (int b = 0; color != EMPTY && b < SQ_NUMBER; b += 1) {
+                ZOBRIST[color.ordinal()][b] = random.nextLong();
+            }
+        }
+        TURN = random.nextLong();
+        for (int n = 1; n <= JUMP_LIMIT; n += 1) {
+            JUMP_COUNTS[n] = random.nextLong();
+        }
+        for (int b = 0; b < SQ_NUMBER; b += 1) {
+            CAPTURE[b] = ZOBRIST[RED.ordinal()][b]
+                ^ ZOBRIST[BLUE.ordinal()][b];
+        }
+    }
+
+    static {
+        Arrays.fill(BITS, -1);
+        for (char c = 'a'; c <= 'g'; c += 1) {
+            for (char r = '1'; r <= '7'; r += 1) {
+                BITS[index(c, r)] = (r - '1') * SIDE + (c - 'a');
+            }
+        }
+        for (char c = 'a'; c <= 'g'; c += 1) {
+            for (char r = '1'; r <= '7'; r += 1) {
+                int from = BITS[index(c, r)];
+                for (int dc = -2; dc <= 2; dc += 1) {
+                    for (int dr = -2; dr <= 2; dr += 1) {
+                        int to = BITS[neighbor(index(c, r), dc, dr)];
+                        if (to < 0 || to == from) {
+                            continue;
+                        }
+                        if (Math.abs(dc) <= 1 && Math.abs(dr) <= 1) {
+                            NEIGHBORS[from] |= 1L << to;
+                        } else {
+                            JUMPS[from] |= 1L << to;
+                        }
+                        MOVES[from][to] = Move.move(c, r, (char) (c + dc),
+                                                    (char) (r + dr));
+                    }
+                }
+            }
+        }
+    }
+
 }
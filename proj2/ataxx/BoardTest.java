@@ -2,7 +2,12 @@ package ataxx;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
 import static org.junit.Assert.*;
+import static ataxx.PieceColor.*;
 
 /** Tests of the Board class.
  *  @author YunjieZhang
@@ -24,6 +29,12 @@ public class BoardTest {
         GAME3 = { "a7-b7", "a1-b1",
                   "b7-b6", "b1-b2"};
 
+    /** Blocks leaving only rows 4 and the corners and middles of rows 1
+     *  and 7 open, so that pieces are often stuck on the edges. */
+    private static final String[] CORRIDORS = {
+        "a2", "a3", "b1", "b2", "b3", "c2", "c3", "d1", "d2", "d3"
+    };
+
 
     /** The method to make moves. */
     private static void makeMoves(Board b, String[] moves) {
@@ -112,6 +123,159 @@ public class BoardTest {
         assertEquals(true, b1.gameOver());
     }
 
+    /** Return the moves of the player on move on B, other than pass,
+     *  found by examining every square. */
+    private static HashSet<Move> slowMoves(Board b) {
+        HashSet<Move> result = new HashSet<>();
+        for (char c = 'a'; c <= 'g'; c += 1) {
+            for (char r = '1'; r <= '7'; r += 1) {
+                if (b.get(c, r) != b.whoseMove()) {
+                    continue;
+                }
+                for (int dc = -2; dc <= 2; dc += 1) {
+                    for (int dr = -2; dr <= 2; dr += 1) {
+                        char c1 = (char) (c + dc), r1 = (char) (r + dr);
+                        if (b.get(c1, r1) == EMPTY) {
+                            result.add(Move.move(c, r, c1, r1));
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of squares of B containing COLOR. */
+    private static int slowCount(Board b, PieceColor color) {
+        int result = 0;
+        for (char c = 'a'; c <= 'g'; c += 1) {
+            for (char r = '1'; r <= '7'; r += 1) {
+                if (b.get(c, r) == color) {
+                    result += 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Test move generation and counting in random games against
+     *  examination of every square. */
+    @Test
+    public void testLegalMoves() {
+        Random random = new Random(61);
+        for (int game = 0; game < 20; game += 1) {
+            Board b = new Board();
+            b.setBlock((char) ('b' + random.nextInt(3)),
+                       (char) ('2' + random.nextInt(3)));
+            checkRandomGame(b, random);
+        }
+        for (int game = 0; game < 20; game += 1) {
+            Board b = new Board();
+            for (String block : CORRIDORS) {
+                b.setBlock(block);
+            }
+            checkRandomGame(b, random);
+        }
+    }
+
+    /** Play a random game with RANDOM from B, checking move generation
+     *  and counting in each position against examination of every
+     *  square. */
+    private static void checkRandomGame(Board b, Random random) {
+        while (!b.gameOver()) {
+            ArrayList<Move> moves = b.legalMoves();
+            HashSet<Move> expected = slowMoves(b);
+            assertEquals(expected, new HashSet<>(moves));
+            assertEquals(expected.size(), moves.size());
+            assertEquals(!moves.isEmpty(), b.canMove(b.whoseMove()));
+            for (Move move : moves) {
+                assertTrue(b.legalMove(move));
+            }
+            assertEquals(slowCount(b, RED), b.redPieces());
+            assertEquals(slowCount(b, BLUE), b.bluePieces());
+            if (moves.isEmpty()) {
+                b.pass();
+            } else {
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    /** Test that undoing random games, including passes, restores each
+     *  earlier position, jump count, and player on move. */
+    @Test
+    public void testUndoRandom() {
+        Random random = new Random(62);
+        for (int game = 0; game < 20; game += 1) {
+            Board b = new Board();
+            b.setBlock((char) ('b' + random.nextInt(3)),
+                       (char) ('2' + random.nextInt(3)));
+            ArrayList<Board> positions = new ArrayList<>();
+            ArrayList<Integer> jumps = new ArrayList<>();
+            while (!b.gameOver()) {
+                positions.add(new Board(b));
+                jumps.add(b.numJumps());
+                ArrayList<Move> moves = b.legalMoves();
+                if (moves.isEmpty()) {
+                    b.makeMove(Move.PASS);
+                } else {
+                    b.makeMove(moves.get(random.nextInt(moves.size())));
+                }
+            }
+            for (int k = positions.size() - 1; k >= 0; k -= 1) {
+                b.undo();
+                Board expected = positions.get(k);
+                assertEquals(expected, b);
+                assertEquals((int) jumps.get(k), b.numJumps());
+                assertEquals(expected.whoseMove(), b.whoseMove());
+                assertEquals(expected.redPieces(), b.redPieces());
+                assertEquals(expected.numMoves(), b.numMoves());
+                assertEquals(expected.key(), b.key());
+            }
+        }
+    }
+
+    /** Test that positions reached by different orders of moves have
+     *  the same key, and different positions different keys. */
+    @Test
+    public void testKey() {
+        Board b0 = new Board();
+        Board b1 = new Board();
+        makeMoves(b0, new String[] { "a7-b7", "a1-a2", "g1-f1", "g7-g6" });
+        makeMoves(b1, new String[] { "g1-f1", "g7-g6", "a7-b7", "a1-a2" });
+        assertEquals(b0, b1);
+        assertEquals(b0.key(), b1.key());
+        Board b2 = new Board(b0);
+        assertEquals(b0.key(), b2.key());
+        b0.makeMove('b', '7', 'b', '6');
+        b2.makeMove('b', '7', 'c', '6');
+        assertNotEquals(b0.key(), b2.key());
+        b1.makeMove('b', '7', 'b', '6');
+        assertEquals(b0.key(), b1.key());
+        b1.setBlock('d', '4');
+        assertNotEquals(b0.key(), b1.key());
+    }
+
+    /** Test that the same position with different numbers of consecutive
+     *  jumps has different keys, since the game may be over in one and
+     *  not the other. */
+    @Test
+    public void testKeyJumps() {
+        Board b0 = new Board();
+        Board b1 = new Board();
+        makeMoves(b1, new String[] { "a7-a5", "a1-a3", "a5-a7", "a3-a1" });
+        assertEquals(b0, b1);
+        assertEquals(b0.whoseMove(), b1.whoseMove());
+        assertEquals(4, b1.numJumps());
+        assertNotEquals(b0.key(), b1.key());
+        b1.makeMove('a', '7', 'b', '7');
+        b0.makeMove('a', '7', 'b', '7');
+        assertEquals(b0.key(), b1.key());
+        b1.undo();
+        assertEquals(4, b1.numJumps());
+        assertNotEquals(new Board().key(), b1.key());
+    }
+
     /** Test toString method. */
     @Test
     public void testToString() {
@@ -0,0 +1,122 @@
+package ataxx;
+
+/** A fixed-size table of the results of searching positions, indexed by
+ *  their Zobrist keys (see Board.key).  Each entry records the depth of
+ *  the search, its score, whether the score is exact or only a bound
+ *  (because the search was cut off by alpha-beta pruning), and the best
+ *  move found.  A new entry replaces any other entry in its slot, except
+ *  a deeper one for the same position.
+ *
+ *  Each slot is two longs: the data, packed as described at DEPTH_SHIFT,
+ *  and the key exclusive-ored with the data.  An entry is found only if
+ *  the two agree with the key, so a slot half-written by another thread
+ *  is a miss rather than a wrong answer, and the table needs no locks.
+ *  The counts of probes and hits are statistics, which concurrent use
+ *  may make slightly low.
+ *  @author YunjieZhang
+ */
+class TranspositionTable {
+
+    /** Bound type of an exact score. */
+    static final int EXACT = 0;
+    /** Bound type of a score that is at most the true score. */
+    static final int LOWER = 1;
+    /** Bound type of a score that is at least the true score. */
+    static final int UPPER = 2;
+
+    /** A table of 2 ** LOGSIZE entries. */
+    TranspositionTable(int logSize) {
+        _entries = new long[2 << logSize];
+        _mask = (1 << logSize) - 1;
+    }
+
+    /** Return the data of the entry for the position with key KEY, or 0
+     *  if there is none.  The data is for use with depth, bound, score,
+     *  and move. */
+    long probe(long key) {
+        _probes += 1;
+        int k = 2 * ((int) key & _mask);
+        long data = _entries[k + 1];
+        if ((_entries[k] ^ data) != key || data == 0) {
+            return 0;
+        }
+        _hits += 1;
+        return data;
+    }
+
+    /** Record that a search of DEPTH levels of the position with key KEY
+     *  found SCORE, with bound type BOUND, and best move with moveIndex
+     *  MOVE, or -1 if none. */
+    void store(long key, int depth, int bound, int score, int move) {
+        int k = 2 * ((int) key & _mask);
+        long old = _entries[k + 1];
+        if ((_entries[k] ^ old) == key && depth(old) > depth) {
+            return;
+        }
+        long data = ((long) depth << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) (move + 1) << MOVE_SHIFT)
+            | (score & SCORE_MASK) | VALID;
+        _entries[k] = key ^ data;
+        _entries[k + 1] = data;
+    }
+
+    /** Return the depth of the search recorded in DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the bound type of the score recorded in DATA. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the score recorded in DATA. */
+    static int score(long data) {
+        return (int) data;
+    }
+
+    /** Return the moveIndex of the best move recorded in DATA, or -1 if
+     *  none. */
+    static int move(long data) {
+        return ((int) (data >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+    }
+
+    /** Return the number of calls to probe. */
+    long probes() {
+        return _probes;
+    }
+
+    /** Return the number of calls to probe that found an entry. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the fraction of calls to probe that found an entry, or 0 if
+     *  there have been none. */
+    double hitRate() {
+        return _probes == 0 ? 0.0 : (double) _hits / _probes;
+    }
+
+    /** Data is packed, from the least significant bit, as the 32-bit
+     *  score, the moveIndex of the best move plus 1 (12 bits), the bound
+     *  type (2 bits), the depth (8 bits), and a bit that is always 1, so
+     *  that no entry has data 0. */
+    private static final int MOVE_SHIFT = 32, BOUND_SHIFT = 44,
+        DEPTH_SHIFT = 46;
+    /** Masks of the fields, after shifting. */
+    private static final int MOVE_MASK = (1 << 12) - 1, BOUND_MASK = 3,
+        DEPTH_MASK = (1 << 8) - 1;
+    /** Mask of the score. */
+    private static final long SCORE_MASK = 0xffffffffL;
+    /** The bit set in all data. */
+    private static final long VALID = 1L << 54;
+
+    /** The slots: key ^ data, followed by data. */
+    private final long[] _entries;
+    /** Mask selecting a slot number from a key. */
+    private final int _mask;
+    /** Numbers of probes and hits. */
+    private long _probes, _hits;
+
+}
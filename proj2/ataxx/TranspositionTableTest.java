@@ -0,0 +1,49 @@
+package ataxx;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static ataxx.TranspositionTable.*;
+
+/** Tests of the TranspositionTable class.
+ *  @author YunjieZhang
+ */
+public class TranspositionTableTest {
+
+    /** Test that stored entries are found with their contents. */
+    @Test
+    public void testStore() {
+        TranspositionTable table = new TranspositionTable(4);
+        long key = 0x123456789abcdefL;
+        assertEquals(0, table.probe(key));
+        table.store(key, 3, LOWER, -17, Board.MOVE_INDICES - 1);
+        long data = table.probe(key);
+        assertEquals(3, depth(data));
+        assertEquals(LOWER, bound(data));
+        assertEquals(-17, score(data));
+        assertEquals(Board.MOVE_INDICES - 1, move(data));
+        table.store(key + 1, 0, EXACT, Integer.MIN_VALUE + 1, -1);
+        data = table.probe(key + 1);
+        assertEquals(Integer.MIN_VALUE + 1, score(data));
+        assertEquals(-1, move(data));
+        assertEquals(3, table.probes());
+        assertEquals(2, table.hits());
+    }
+
+    /** Test that entries for other positions are replaced, and that
+     *  those for the same position are replaced only by deeper ones. */
+    @Test
+    public void testReplace() {
+        TranspositionTable table = new TranspositionTable(4);
+        long key = 5;
+        table.store(key, 4, EXACT, 10, 1);
+        table.store(key, 2, EXACT, 20, 2);
+        assertEquals(10, score(table.probe(key)));
+        table.store(key, 5, UPPER, 30, 3);
+        assertEquals(30, score(table.probe(key)));
+        table.store(key + (1 << 4), 1, EXACT, 40, 4);
+        assertEquals(0, table.probe(key));
+        assertEquals(40, score(table.probe(key + (1 << 4))));
+    }
+
+}
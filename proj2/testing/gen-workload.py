@@ -0,0 +1,156 @@
+# Generates long, reproducible ataxx test scripts for load testing.
+#
+# Usage: python3 gen-workload.py [ --seed=N ] [ --games=N ] [ --blocks=N ]
+#                                [ --dump-every=N ] [ --prefix=P ]
+#
+# Writes P01.inp, P02.inp, ... (default P is "workload/game"), each of which
+# plays one complete game between two manual players making random legal
+# moves.  After every N-th move (default 1), the script dumps the board
+# and checks the dump against a model of the game, and it ends by checking
+# the reported outcome, so that the scripts may be run by test-ataxx.py.
+# The same seed always produces the same scripts.
+
+import os, sys
+from getopt import getopt, GetoptError
+from random import Random
+
+SIDE = 7
+JUMP_LIMIT = 25
+EMPTY, RED, BLUE, BLOCKED = '-', 'r', 'b', 'X'
+
+class board:
+    def __init__(self):
+        self.squares = [[EMPTY] * SIDE for r in range(SIDE)]
+        self.squares[0][0] = self.squares[SIDE - 1][SIDE - 1] = BLUE
+        self.squares[SIDE - 1][0] = self.squares[0][SIDE - 1] = RED
+        self.turn = RED
+        self.jumps = 0
+
+    def get(self, c, r):
+        if 0 <= c < SIDE and 0 <= r < SIDE:
+            return self.squares[r][c]
+        return BLOCKED
+
+    def count(self, who):
+        return sum(row.count(who) for row in self.squares)
+
+    def block(self, c, r):
+        """Block C R and its reflections, as for the block command,
+        returning False (and leaving the board unchanged) if any of them
+        holds a piece."""
+        cs, rs = (c, SIDE - 1 - c), (r, SIDE - 1 - r)
+        if any(self.get(c1, r1) in (RED, BLUE) for c1 in cs for r1 in rs):
+            return False
+        for c1 in cs:
+            for r1 in rs:
+                self.squares[r1][c1] = BLOCKED
+        return True
+
+    def moves(self, who):
+        result = []
+        for r0 in range(SIDE):
+            for c0 in range(SIDE):
+                if self.squares[r0][c0] != who:
+                    continue
+                for r1 in range(r0 - 2, r0 + 3):
+                    for c1 in range(c0 - 2, c0 + 3):
+                        if self.get(c1, r1) == EMPTY:
+                            result.append((c0, r0, c1, r1))
+        return result
+
+    def game_over(self):
+        red, blue = self.count(RED), self.count(BLUE)
+        return (self.jumps == JUMP_LIMIT or red == 0 or blue == 0
+                or red + blue + self.count(BLOCKED) == SIDE * SIDE
+                or not (self.moves(RED) or self.moves(BLUE)))
+
+    def make_move(self, move):
+        c0, r0, c1, r1 = move
+        if max(abs(c1 - c0), abs(r1 - r0)) == 2:
+            self.squares[r0][c0] = EMPTY
+            self.jumps += 1
+        else:
+            self.jumps = 0
+        self.squares[r1][c1] = self.turn
+        other = BLUE if self.turn == RED else RED
+        for r in range(r1 - 1, r1 + 2):
+            for c in range(c1 - 1, c1 + 2):
+                if self.get(c, r) == other:
+                    self.squares[r][c] = self.turn
+        self.turn = other
+
+    def pass_move(self):
+        self.jumps = 0
+        self.turn = BLUE if self.turn == RED else RED
+
+    def dump(self):
+        return (["@<==="]
+                + ["@<  " + " ".join(self.squares[r]) for r in
+                   range(SIDE - 1, -1, -1)]
+                + ["@<==="])
+
+def square(c, r):
+    return "abcdefg"[c] + str(r + 1)
+
+def script(rand, blocks, dump_every):
+    """Return the lines of a script playing one random game with up to
+    BLOCKS blocks, dumping the board every DUMP_EVERY moves."""
+    b = board()
+    lines = ["java -ea ataxx.Main", "manual red", "manual blue"]
+    for i in range(blocks):
+        c, r = rand.randrange(SIDE), rand.randrange(SIDE)
+        if b.block(c, r):
+            lines.append("block " + square(c, r))
+    lines.append("start")
+    plies = 0
+    while not b.game_over():
+        moves = b.moves(b.turn)
+        if not moves:
+            b.pass_move()
+            continue
+        move = rand.choice(moves)
+        lines.append(square(move[0], move[1]) + "-"
+                     + square(move[2], move[3]))
+        b.make_move(move)
+        plies += 1
+        if dump_every > 0 and plies % dump_every == 0 and not b.game_over():
+            lines.append("dump")
+            lines += b.dump()
+    red, blue = b.count(RED), b.count(BLUE)
+    if red > blue:
+        lines.append("@<Red wins.")
+    elif blue > red:
+        lines.append("@<Blue wins.")
+    else:
+        lines.append("@<Draw.")
+    lines.append("dump")
+    lines += b.dump()
+    lines.append("quit")
+    return lines
+
+try:
+    opts, args = getopt(sys.argv[1:], '',
+                        ['seed=', 'games=', 'blocks=', 'dump-every=',
+                         'prefix='])
+    opts = dict(opts)
+    seed = int(opts.get('--seed', 61))
+    games = int(opts.get('--games', 10))
+    blocks = int(opts.get('--blocks', 4))
+    dump_every = int(opts.get('--dump-every', 1))
+    prefix = opts.get('--prefix', 'workload/game')
+    if args:
+        raise GetoptError("unexpected arguments")
+except (GetoptError, ValueError):
+    print("Usage: python3 gen-workload.py [ --seed=N ] [ --games=N ] "
+          "[ --blocks=N ] [ --dump-every=N ] [ --prefix=P ]",
+          file=sys.stderr)
+    sys.exit(1)
+
+rand = Random(seed)
+if os.path.dirname(prefix):
+    os.makedirs(os.path.dirname(prefix), exist_ok=True)
+for g in range(1, games + 1):
+    with open("{}{:02d}.inp".format(prefix, g), "w") as out:
+        out.write("# Generated by gen-workload.py --seed={} (game {}).\n"
+                  .format(seed, g))
+        out.write("\n".join(script(rand, blocks, dump_every)) + "\n")
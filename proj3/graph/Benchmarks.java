@@ -0,0 +1,134 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Random;
+
+import bench.Harness;
+
+/** Micro-benchmarks of graph construction, traversal of successors and
+ *  shortest paths, run and reported by a bench.Harness.  The size
+ *  parameter of each benchmark is the number of vertices of a random
+ *  directed graph with EDGES_PER_VERTEX times as many edges.
+ *  @author YunjieZhang
+ */
+class Benchmarks {
+
+    /** Run the benchmarks named in ARGS, or all of them if none are
+     *  named.  ARGS may start with --json FILE, in which case the results
+     *  are also written to FILE. */
+    public static void main(String... args) {
+        Benchmarks bench = new Benchmarks();
+        for (String name : bench._harness.names(args, NAMES)) {
+            switch (name) {
+            case "add":
+                bench.add();
+                break;
+            case "successors":
+                bench.successors();
+                break;
+            case "paths":
+                bench.setPaths();
+                break;
+            default:
+                bench._harness.unknown(name);
+            }
+        }
+        bench._harness.finish();
+    }
+
+    /** Names of all benchmarks. */
+    private static final String[] NAMES = { "add", "successors", "paths" };
+
+    /** Time building graphs by adding vertices and then edges. */
+    private void add() {
+        for (int size : SIZES) {
+            int[] edges = randomEdges(size);
+            long ops = size + edges.length / 2;
+            _harness.measure("GraphObj.add", size, ops, () -> {
+                return build(size, edges).edgeSize();
+            });
+        }
+    }
+
+    /** Time iterating over the successors of every vertex. */
+    private void successors() {
+        for (int size : SIZES) {
+            Graph G = build(size, randomEdges(size));
+            _harness.measure("GraphObj.successors", size, G.edgeSize(), () -> {
+                long sum = 0;
+                for (int v : G.vertices()) {
+                    for (int w : G.successors(v)) {
+                        sum += w;
+                    }
+                }
+                return sum;
+            });
+        }
+    }
+
+    /** Time finding the shortest paths from one vertex to all others. */
+    private void setPaths() {
+        for (int size : PATH_SIZES) {
+            Graph G = build(size, randomEdges(size));
+            _harness.measure("SimpleShortestPaths.setPaths", size, 1, () -> {
+                SimpleShortestPaths paths = new SimpleShortestPaths(G, 1) {
+                    @Override
+                    protected double getWeight(int u, int v) {
+                        return 1 + (u * 31 + v * 17) % 10;
+                    }
+                };
+                paths.setPaths();
+                return (long) paths.getWeight(size);
+            });
+        }
+    }
+
+    /** Return the endpoints of EDGES_PER_VERTEX * SIZE random edges
+     *  among vertices 1 .. SIZE, as consecutive pairs, with every vertex
+     *  reachable from 1. */
+    private static int[] randomEdges(int size) {
+        Random random = new Random(size);
+        int[] result = new int[2 * EDGES_PER_VERTEX * size];
+        for (int i = 0; i < result.length; i += 2) {
+            int u = i / 2 + 1;
+            if (u < size) {
+                result[i] = random.nextInt(u) + 1;
+                result[i + 1] = u + 1;
+            } else {
+                result[i] = random.nextInt(size) + 1;
+                result[i + 1] = random.nextInt(size) + 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return a directed graph with vertices 1 .. SIZE and the edges
+     *  whose endpoints are given in EDGES, as for randomEdges. */
+    private static Graph build(int size, int[] edges) {
+        DirectedGraph G = new DirectedGraph();
+        for (int i = 0; i < size; i += 1) {
+            G.add();
+        }
+        for (int i = 0; i < edges.length; i += 2) {
+            G.add(edges[i], edges[i + 1]);
+        }
+        return G;
+    }
+
+    /** Numbers of vertices in the graphs built and traversed. */
+    private static final int[] SIZES = { 64, 256, 1024 };
+    /** Numbers of vertices in the graphs searched for shortest paths. */
+    private static final int[] PATH_SIZES = { 64, 128, 256 };
+    /** Ratio of edges to vertices in each graph. */
+    private static final int EDGES_PER_VERTEX = 4;
+
+    /** Number of untimed runs of each benchmark. */
+    private static final int WARMUP = 3;
+    /** Number of timed runs of each benchmark. */
+    private static final int REPEATS = 5;
+
+    /** Runs and reports the benchmarks. */
+    private final Harness _harness = new Harness("graph", WARMUP, REPEATS);
+
+}
@@ -0,0 +1,74 @@
+# Generates large, reproducible makefiles for load testing make.
+#
+# Usage: python3 gen-workload.py [ --seed=N ] [ --depth=N ] [ --width=N ]
+#                                [ --fanin=N ] [ --stale=F ] [ --prefix=P ]
+#
+# Writes P.mk (default P is "workload/build"), whose rules form DEPTH
+# levels (default 100) of WIDTH targets each (default 100).  Each target
+# depends on FANIN random targets (default 3) of the level below, and
+# those of the lowest level on source files.  Target "all" depends on the
+# whole top level.  Also writes P.dir, giving ages for all the sources
+# and for all but a random fraction F (default 0.1) of the targets, which
+# must therefore be rebuilt, and P.in, requesting "all", so that the test
+# may be run with
+#        java -ea make.Main -f P.mk -D P.dir all
+# Deep, narrow graphs (--width=1) and shallow, wide ones (--depth=1) are
+# both useful.  The same seed always produces the same files.
+
+import os, sys
+from getopt import getopt, GetoptError
+from random import Random
+
+def target(level, i):
+    return "t{}_{}.o".format(level, i)
+
+def source(i):
+    return "s{}.c".format(i)
+
+try:
+    opts, args = getopt(sys.argv[1:], '',
+                        ['seed=', 'depth=', 'width=', 'fanin=', 'stale=',
+                         'prefix='])
+    opts = dict(opts)
+    seed = int(opts.get('--seed', 61))
+    depth = int(opts.get('--depth', 100))
+    width = int(opts.get('--width', 100))
+    fanin = int(opts.get('--fanin', 3))
+    stale = float(opts.get('--stale', 0.1))
+    prefix = opts.get('--prefix', 'workload/build')
+    if args or depth < 1 or width < 1 or fanin < 1:
+        raise GetoptError("bad arguments")
+except (GetoptError, ValueError):
+    print("Usage: python3 gen-workload.py [ --seed=N ] [ --depth=N ] "
+          "[ --width=N ] [ --fanin=N ] [ --stale=F ] [ --prefix=P ]",
+          file=sys.stderr)
+    sys.exit(1)
+
+rand = Random(seed)
+if os.path.dirname(prefix):
+    os.makedirs(os.path.dirname(prefix), exist_ok=True)
+with open(prefix + ".mk", "w") as out:
+    out.write("all: {}\n\ttouch all\n\n".format(" ".join(target(depth, i)
+                                                     for i in range(width))))
+    for level in range(depth, 0, -1):
+        for i in range(width):
+            if level == 1:
+                prereqs = [source(i)]
+            else:
+                prereqs = [target(level - 1, j) for j in
+                           rand.sample(range(width), min(fanin, width))]
+            out.write("{}: {}\n".format(target(level, i), " ".join(prereqs)))
+            out.write("\tcc -o {} {}\n\n".format(target(level, i),
+                                               " ".join(prereqs)))
+with open(prefix + ".dir", "w") as out:
+    now = 10 * (depth + 2)
+    out.write("{}\n".format(now))
+    for i in range(width):
+        out.write("{} {}\n".format(source(i), rand.randrange(10)))
+    for level in range(1, depth + 1):
+        for i in range(width):
+            if rand.random() >= stale:
+                age = 10 * level + rand.randrange(10, 20)
+                out.write("{} {}\n".format(target(level, i), age))
+with open(prefix + ".in", "w") as out:
+    out.write("all\n")
@@ -0,0 +1,80 @@
+# Generates large, reproducible road maps for load testing trip.
+#
+# Usage: python3 gen-workload.py [ --seed=N ] [ --locations=N ]
+#                                [ --stops=N ] [ --prefix=P ]
+#
+# Writes P.map (default P is "workload/roads"), a map of about N
+# locations (default 100000) on a jittered square grid, joined by an
+# east-west road along every row and by north-south roads along about
+# half of the columns, so that every location is reachable from every
+# other.  Each road is somewhat longer than the straight line between its
+# ends.  Also writes P.in, a request for a trip through N random stops
+# (default 3), so that the test may be run with
+#        java -ea trip.Main -m P.map <contents of P.in>
+# The same seed always produces the same files.
+
+import math, os, sys
+from getopt import getopt, GetoptError
+from random import Random
+
+SPACING = 1.0
+
+def name(r, c):
+    return "X{}_{}".format(r, c)
+
+def road(out, rand, point0, point1, roadname, forward, backward):
+    """Write a road named ROADNAME between POINT0 and POINT1, which are
+    (name, x, y) triples, in a random one of its two orientations.
+    FORWARD and BACKWARD are the directions from POINT0 to POINT1 and
+    back, as for the map format."""
+    length = math.hypot(point1[1] - point0[1], point1[2] - point0[2])
+    length *= 1.001 + 0.3 * rand.random()
+    if rand.random() < 0.5:
+        ends, direction = (point0[0], point1[0]), forward
+    else:
+        ends, direction = (point1[0], point0[0]), backward
+    out.write("R {} {} {:.4f} {} {}\n".format(ends[0], roadname, length,
+                                               direction, ends[1]))
+
+try:
+    opts, args = getopt(sys.argv[1:], '',
+                        ['seed=', 'locations=', 'stops=', 'prefix='])
+    opts = dict(opts)
+    seed = int(opts.get('--seed', 61))
+    locations = int(opts.get('--locations', 100000))
+    stops = int(opts.get('--stops', 3))
+    prefix = opts.get('--prefix', 'workload/roads')
+    if args:
+        raise GetoptError("unexpected arguments")
+except (GetoptError, ValueError):
+    print("Usage: python3 gen-workload.py [ --seed=N ] [ --locations=N ] "
+          "[ --stops=N ] [ --prefix=P ]", file=sys.stderr)
+    sys.exit(1)
+
+rand = Random(seed)
+side = max(2, int(math.sqrt(locations)))
+if os.path.dirname(prefix):
+    os.makedirs(os.path.dirname(prefix), exist_ok=True)
+with open(prefix + ".map", "w") as out:
+    points = []
+    for r in range(side):
+        row = []
+        for c in range(side):
+            x = c * SPACING + (rand.random() - 0.5) * SPACING / 2
+            y = r * SPACING + (rand.random() - 0.5) * SPACING / 2
+            row.append((name(r, c), x, y))
+            out.write("L {} {:.4f} {:.4f}\n".format(name(r, c), x, y))
+        points.append(row)
+    out.write("\n")
+    avenues = [c == 0 or rand.random() < 0.5 for c in range(side)]
+    for r in range(side):
+        for c in range(side):
+            if c + 1 < side:
+                road(out, rand, points[r][c], points[r][c + 1],
+                     "Street_{}".format(r), "WE", "EW")
+            if r + 1 < side and avenues[c]:
+                road(out, rand, points[r][c], points[r + 1][c],
+                     "Avenue_{}".format(c), "SN", "NS")
+with open(prefix + ".in", "w") as out:
+    out.write(" ".join(name(rand.randrange(side), rand.randrange(side))
+                       for i in range(stops)) + "\n")